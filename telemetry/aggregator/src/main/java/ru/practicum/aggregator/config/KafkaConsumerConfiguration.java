@@ -1,32 +1,45 @@
 package ru.practicum.aggregator.config;
 
 import lombok.RequiredArgsConstructor;
-import org.apache.avro.specific.SpecificRecordBase;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
 import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.RangeAssignor;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.springframework.beans.factory.config.ConfigurableBeanFactory;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Scope;
 import org.springframework.core.env.Environment;
 
 import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Configuration
 @RequiredArgsConstructor
 public class KafkaConsumerConfiguration {
     private final Environment env;
+    private final AtomicInteger consumerCount = new AtomicInteger();
 
+    /**
+     * Каждый поток агрегатора берёт собственного потребителя: KafkaConsumer не потокобезопасен.
+     * Потребитель читает события датчиков и события хабов; оба топика партиционированы по
+     * hub_id с одинаковым числом партиций, а {@link RangeAssignor} назначает одному потоку
+     * одноимённые партиции обоих топиков, так что удаление устройства приходит в тот поток,
+     * который хранит состояние хаба. С движком {@code raw} события датчиков декодируются
+     * лениво, только заголовок.
+     */
     @Bean
-    public KafkaConsumer<String, SpecificRecordBase> getConsumer() {
+    @Scope(ConfigurableBeanFactory.SCOPE_PROTOTYPE)
+    public KafkaConsumer<String, Object> getConsumer() {
         Properties config = new Properties();
-        config.put(ConsumerConfig.CLIENT_ID_CONFIG, "aggregator-consumer");
+        config.put(ConsumerConfig.CLIENT_ID_CONFIG, "aggregator-consumer-" + consumerCount.incrementAndGet());
         config.put(ConsumerConfig.GROUP_ID_CONFIG, "aggregator-group");
         config.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, "localhost:9092");
-        config.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG,
-                "org.apache.kafka.common.serialization.StringDeserializer");
-        config.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG,
-                "kafka.deserializer.SensorEventDeserializer");
-        config.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "true");
+        config.put(ConsumerConfig.PARTITION_ASSIGNMENT_STRATEGY_CONFIG, RangeAssignor.class.getName());
+        config.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "false");
 
-        return new KafkaConsumer<>(config);
+        return new KafkaConsumer<>(config, new StringDeserializer(),
+                new TelemetryEventDeserializer(env.getProperty("topic.telemetry-hubs", "telemetry.hubs.v1"),
+                        "raw".equals(env.getProperty("aggregator.state.engine"))));
     }
 }
@@ -1,7 +1,6 @@
 package ru.practicum.aggregator.config;
 
 import lombok.RequiredArgsConstructor;
-import org.apache.avro.specific.SpecificRecordBase;
 import org.apache.kafka.clients.producer.KafkaProducer;
 import org.apache.kafka.clients.producer.Producer;
 import org.apache.kafka.clients.producer.ProducerConfig;
@@ -16,14 +15,35 @@ import java.util.Properties;
 public class KafkaProducerConfiguration {
     private final Environment env;
 
+    /**
+     * Значения — Avro-записи или уже закодированные снапшоты, см. {@link SnapshotValueSerializer}.
+     */
     @Bean
-    public Producer<String, SpecificRecordBase> getProducer() {
+    public Producer<String, Object> getProducer() {
+        return new KafkaProducer<>(producerConfig());
+    }
+
+    /**
+     * Транзакционные продюсеры потоков агрегатора. Идентификатор транзакций должен быть
+     * стабильным между перезапусками, чтобы новый экземпляр отстранил зависший старый.
+     */
+    @Bean
+    public TransactionalProducerFactory transactionalProducerFactory() {
+        return transactionalId -> {
+            Properties config = producerConfig();
+            config.put(ProducerConfig.TRANSACTIONAL_ID_CONFIG, transactionalId);
+            config.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, "true");
+            config.put(ProducerConfig.ACKS_CONFIG, "all");
+            return new KafkaProducer<>(config);
+        };
+    }
+
+    private Properties producerConfig() {
         Properties config = new Properties();
         config.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, "localhost:9092");
         config.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, "org.apache.kafka.common.serialization.StringSerializer");
-        config.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG,
-                "kafka.serializer.GeneralAvroSerializer");
-
-        return new KafkaProducer<>(config);
+        config.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, SnapshotValueSerializer.class.getName());
+        config.put(ProducerConfig.PARTITIONER_CLASS_CONFIG, "kafka.partitioner.HubIdPartitioner");
+        return config;
     }
 }
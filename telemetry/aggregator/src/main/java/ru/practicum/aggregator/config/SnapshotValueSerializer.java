@@ -0,0 +1,22 @@
+package ru.practicum.aggregator.config;
+
+import kafka.serializer.GeneralAvroSerializer;
+import org.apache.avro.specific.SpecificRecordBase;
+import org.apache.kafka.common.serialization.Serializer;
+
+/**
+ * Сериализатор значений продюсера агрегатора: Avro-записи кодируются
+ * {@link GeneralAvroSerializer}, а уже закодированные снапшоты ({@code byte[]})
+ * уходят как есть.
+ */
+public class SnapshotValueSerializer implements Serializer<Object> {
+    private final GeneralAvroSerializer avroSerializer = new GeneralAvroSerializer();
+
+    @Override
+    public byte[] serialize(String topic, Object data) {
+        if (data instanceof byte[] encoded) {
+            return encoded;
+        }
+        return avroSerializer.serialize(topic, (SpecificRecordBase) data);
+    }
+}
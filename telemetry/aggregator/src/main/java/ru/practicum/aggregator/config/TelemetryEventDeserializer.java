@@ -0,0 +1,47 @@
+package ru.practicum.aggregator.config;
+
+import kafka.deserializer.HubEventDeserializer;
+import kafka.deserializer.SensorEventBatchDeserializer;
+import kafka.deserializer.SensorEventDeserializer;
+import kafka.deserializer.SensorEventHeaderDeserializer;
+import kafka.serializer.TelemetryHeaders;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Deserializer;
+
+/**
+ * Десериализатор для потребителя, подписанного и на события датчиков, и на события хабов:
+ * схема выбирается по топику записи. События датчиков в ленивом режиме разбираются до
+ * {@link kafka.deserializer.SensorEventHeader}, иначе декодируются целиком. Пакеты показаний,
+ * помеченные заголовком {@link TelemetryHeaders#FORMAT}, всегда декодируются целиком.
+ */
+class TelemetryEventDeserializer implements Deserializer<Object> {
+    private final String hubsTopic;
+    private final boolean lazySensorEvents;
+    private final HubEventDeserializer hubEvents = new HubEventDeserializer();
+    private final SensorEventDeserializer sensorEvents = new SensorEventDeserializer();
+    private final SensorEventHeaderDeserializer sensorEventHeaders = new SensorEventHeaderDeserializer();
+    private final SensorEventBatchDeserializer sensorEventBatches = new SensorEventBatchDeserializer();
+
+    TelemetryEventDeserializer(String hubsTopic, boolean lazySensorEvents) {
+        this.hubsTopic = hubsTopic;
+        this.lazySensorEvents = lazySensorEvents;
+    }
+
+    @Override
+    public Object deserialize(String topic, Headers headers, byte[] data) {
+        if (TelemetryHeaders.isSensorEventBatch(headers)) {
+            return sensorEventBatches.deserialize(topic, data);
+        }
+        return deserialize(topic, data);
+    }
+
+    @Override
+    public Object deserialize(String topic, byte[] data) {
+        if (hubsTopic.equals(topic)) {
+            return hubEvents.deserialize(topic, data);
+        }
+        return lazySensorEvents
+                ? sensorEventHeaders.deserialize(topic, data)
+                : sensorEvents.deserialize(topic, data);
+    }
+}
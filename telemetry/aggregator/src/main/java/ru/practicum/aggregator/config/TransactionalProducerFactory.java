@@ -0,0 +1,8 @@
+package ru.practicum.aggregator.config;
+
+import org.apache.kafka.clients.producer.Producer;
+
+@FunctionalInterface
+public interface TransactionalProducerFactory {
+    Producer<String, Object> create(String transactionalId);
+}
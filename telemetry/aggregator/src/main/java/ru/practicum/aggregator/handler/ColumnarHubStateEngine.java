@@ -0,0 +1,294 @@
+package ru.practicum.aggregator.handler;
+
+import org.springframework.beans.factory.config.ConfigurableBeanFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Scope;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.kafka.telemetry.event.ClimateSensorAvro;
+import ru.yandex.practicum.kafka.telemetry.event.LightSensorAvro;
+import ru.yandex.practicum.kafka.telemetry.event.MotionSensorAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SensorEventAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SensorStateAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SensorsSnapshotAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SwitchSensorAvro;
+import ru.yandex.practicum.kafka.telemetry.event.TemperatureSensorAvro;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Predicate;
+
+/**
+ * Состояние хабов в примитивных массивах. Каждому датчику выделяется слот, и его
+ * показания хранятся по этому слоту в колонках: метка времени, тип показаний и до трёх
+ * целочисленных полей (логические значения — 0/1), плюс время последнего показания
+ * для вытеснения. Изменение определяется сравнением полей, а Avro-снапшот собирается
+ * только по запросу {@link #snapshot(String)}. Хабы упорядочены по последнему показанию,
+ * так что при превышении лимита вытесняются самые давно молчащие.
+ * <p>
+ * Раскладка полей по типам:
+ * climate — temperature_c, humidity, co2_level;
+ * light — link_quality, luminosity;
+ * motion — link_quality, motion, voltage;
+ * switch — state;
+ * temperature — temperature_c, temperature_f.
+ */
+@Component
+@Scope(ConfigurableBeanFactory.SCOPE_PROTOTYPE)
+@ConditionalOnProperty(name = "aggregator.state.engine", havingValue = "columnar")
+public class ColumnarHubStateEngine implements HubStateEngine {
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final byte CLIMATE = 0;
+    private static final byte LIGHT = 1;
+    private static final byte MOTION = 2;
+    private static final byte SWITCH = 3;
+    private static final byte TEMPERATURE = 4;
+
+    private final Map<String, Hub> hubs = new LinkedHashMap<>(INITIAL_CAPACITY, 0.75f, true);
+    private long[] timestamps = new long[INITIAL_CAPACITY];
+    private long[] lastSeen = new long[INITIAL_CAPACITY];
+    private byte[] types = new byte[INITIAL_CAPACITY];
+    private int[] field0 = new int[INITIAL_CAPACITY];
+    private int[] field1 = new int[INITIAL_CAPACITY];
+    private int[] field2 = new int[INITIAL_CAPACITY];
+    private int[] freeSlots = new int[16];
+    private int freeCount;
+    private int nextSlot;
+
+    // Разобранное показание текущего события, чтобы не заводить объект на каждое обновление
+    private byte type;
+    private int value0;
+    private int value1;
+    private int value2;
+
+    @Override
+    public boolean update(SensorEventAvro event) {
+        long now = System.currentTimeMillis();
+        decode(event.getPayload());
+        Hub hub = hubs.get(event.getHubId());
+        if (hub == null) {
+            hub = new Hub();
+            hubs.put(event.getHubId(), hub);
+        }
+        hub.lastSeen = now;
+        Integer slot = hub.slots.get(event.getId());
+        if (slot == null) {
+            int allocated = allocate();
+            hub.slots.put(event.getId(), allocated);
+            write(allocated, event.getTimestamp());
+            lastSeen[allocated] = now;
+        } else {
+            int s = slot;
+            lastSeen[s] = now;
+            if (timestamps[s] > event.getTimestamp() || sameValue(s)) {
+                return false;
+            }
+            write(s, event.getTimestamp());
+        }
+        hub.timestamp = event.getTimestamp();
+        return true;
+    }
+
+    @Override
+    public boolean removeSensor(String hubId, String sensorId) {
+        Hub hub = hubs.get(hubId);
+        if (hub == null) {
+            return false;
+        }
+        Integer slot = hub.slots.remove(sensorId);
+        if (slot == null) {
+            return false;
+        }
+        release(slot);
+        return true;
+    }
+
+    @Override
+    public Eviction evict(long idleHubBefore, long staleSensorBefore, int maxSensors) {
+        Eviction eviction = new Eviction();
+        for (Iterator<Map.Entry<String, Hub>> it = hubs.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<String, Hub> entry = it.next();
+            Hub hub = entry.getValue();
+            if (hub.lastSeen < idleHubBefore) {
+                hub.slots.values().forEach(this::release);
+                it.remove();
+                eviction.idleHub(entry.getKey());
+                continue;
+            }
+            if (staleSensorBefore > 0) {
+                hub.slots.values().removeIf(slot -> {
+                    if (lastSeen[slot] < staleSensorBefore) {
+                        release(slot);
+                        eviction.staleSensor(entry.getKey());
+                        return true;
+                    }
+                    return false;
+                });
+                if (hub.slots.isEmpty()) {
+                    it.remove();
+                    eviction.idleHub(entry.getKey());
+                }
+            }
+        }
+        // Итерация по порядку доступа начинается с самых давно обновлявшихся хабов
+        for (Iterator<Map.Entry<String, Hub>> it = hubs.entrySet().iterator();
+             maxSensors > 0 && sensorCount() > maxSensors && it.hasNext(); ) {
+            Map.Entry<String, Hub> entry = it.next();
+            entry.getValue().slots.values().forEach(this::release);
+            it.remove();
+            eviction.capacityHub(entry.getKey());
+        }
+        return eviction;
+    }
+
+    @Override
+    public Optional<SensorsSnapshotAvro> snapshot(String hubId) {
+        Hub hub = hubs.get(hubId);
+        return hub == null ? Optional.empty() : Optional.of(toAvro(hubId, hub));
+    }
+
+    @Override
+    public Map<String, SensorsSnapshotAvro> extractHubs(Predicate<String> hubIdFilter) {
+        Map<String, SensorsSnapshotAvro> extracted = new HashMap<>();
+        for (Iterator<Map.Entry<String, Hub>> it = hubs.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<String, Hub> entry = it.next();
+            if (hubIdFilter.test(entry.getKey())) {
+                extracted.put(entry.getKey(), toAvro(entry.getKey(), entry.getValue()));
+                entry.getValue().slots.values().forEach(this::release);
+                it.remove();
+            }
+        }
+        return extracted;
+    }
+
+    @Override
+    public Map<String, SensorsSnapshotAvro> copyHubs(Predicate<String> hubIdFilter) {
+        Map<String, SensorsSnapshotAvro> copy = new HashMap<>();
+        hubs.forEach((hubId, hub) -> {
+            if (hubIdFilter.test(hubId)) {
+                copy.put(hubId, toAvro(hubId, hub));
+            }
+        });
+        return copy;
+    }
+
+    @Override
+    public void importHubs(Map<String, SensorsSnapshotAvro> hubSnapshots) {
+        long now = System.currentTimeMillis();
+        hubSnapshots.forEach((hubId, snapshot) -> {
+            Hub hub = new Hub();
+            hub.timestamp = snapshot.getTimestamp();
+            hub.lastSeen = now;
+            snapshot.getSensorsState().forEach((sensorId, state) -> {
+                decode(state.getData());
+                int slot = allocate();
+                write(slot, state.getTimestamp());
+                lastSeen[slot] = now;
+                hub.slots.put(sensorId, slot);
+            });
+            Hub replaced = hubs.put(hubId, hub);
+            if (replaced != null) {
+                replaced.slots.values().forEach(this::release);
+            }
+        });
+    }
+
+    @Override
+    public int hubCount() {
+        return hubs.size();
+    }
+
+    @Override
+    public int sensorCount() {
+        return nextSlot - freeCount;
+    }
+
+    private void decode(Object payload) {
+        switch (payload) {
+            case ClimateSensorAvro climate -> set(CLIMATE,
+                    climate.getTemperatureC(), climate.getHumidity(), climate.getCo2Level());
+            case LightSensorAvro light -> set(LIGHT, light.getLinkQuality(), light.getLuminosity(), 0);
+            case MotionSensorAvro motion -> set(MOTION,
+                    motion.getLinkQuality(), motion.getMotion() ? 1 : 0, motion.getVoltage());
+            case SwitchSensorAvro sw -> set(SWITCH, sw.getState() ? 1 : 0, 0, 0);
+            case TemperatureSensorAvro temperature -> set(TEMPERATURE,
+                    temperature.getTemperatureC(), temperature.getTemperatureF(), 0);
+            default -> throw new IllegalArgumentException("Unknown sensor payload: " + payload);
+        }
+    }
+
+    private void set(byte type, int value0, int value1, int value2) {
+        this.type = type;
+        this.value0 = value0;
+        this.value1 = value1;
+        this.value2 = value2;
+    }
+
+    private boolean sameValue(int slot) {
+        return types[slot] == type && field0[slot] == value0 && field1[slot] == value1 && field2[slot] == value2;
+    }
+
+    private void write(int slot, long timestamp) {
+        timestamps[slot] = timestamp;
+        types[slot] = type;
+        field0[slot] = value0;
+        field1[slot] = value1;
+        field2[slot] = value2;
+    }
+
+    private SensorsSnapshotAvro toAvro(String hubId, Hub hub) {
+        Map<String, SensorStateAvro> states = new HashMap<>(hub.slots.size() * 2);
+        hub.slots.forEach((sensorId, slot) -> states.put(sensorId, SensorStateAvro.newBuilder()
+                .setTimestamp(timestamps[slot])
+                .setData(payloadOf(slot))
+                .build()));
+        return SensorsSnapshotAvro.newBuilder()
+                .setHubId(hubId)
+                .setTimestamp(hub.timestamp)
+                .setSensorsState(states)
+                .build();
+    }
+
+    private Object payloadOf(int slot) {
+        return switch (types[slot]) {
+            case CLIMATE -> new ClimateSensorAvro(field0[slot], field1[slot], field2[slot]);
+            case LIGHT -> new LightSensorAvro(field0[slot], field1[slot]);
+            case MOTION -> new MotionSensorAvro(field0[slot], field1[slot] != 0, field2[slot]);
+            case SWITCH -> new SwitchSensorAvro(field0[slot] != 0);
+            case TEMPERATURE -> new TemperatureSensorAvro(field0[slot], field1[slot]);
+            default -> throw new IllegalStateException("Unknown sensor type " + types[slot]);
+        };
+    }
+
+    private int allocate() {
+        if (freeCount > 0) {
+            return freeSlots[--freeCount];
+        }
+        if (nextSlot == timestamps.length) {
+            int capacity = timestamps.length * 2;
+            timestamps = Arrays.copyOf(timestamps, capacity);
+            lastSeen = Arrays.copyOf(lastSeen, capacity);
+            types = Arrays.copyOf(types, capacity);
+            field0 = Arrays.copyOf(field0, capacity);
+            field1 = Arrays.copyOf(field1, capacity);
+            field2 = Arrays.copyOf(field2, capacity);
+        }
+        return nextSlot++;
+    }
+
+    private void release(int slot) {
+        if (freeCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, freeSlots.length * 2);
+        }
+        freeSlots[freeCount++] = slot;
+    }
+
+    private static final class Hub {
+        private final Map<String, Integer> slots = new HashMap<>();
+        private long timestamp;
+        private long lastSeen;
+    }
+}
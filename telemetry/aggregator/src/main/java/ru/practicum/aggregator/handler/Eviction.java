@@ -0,0 +1,53 @@
+package ru.practicum.aggregator.handler;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Итог вытеснения состояния: хабы, удалённые целиком, и хабы, у которых удалены
+ * отдельные датчики, с разбивкой по причинам.
+ */
+public class Eviction {
+    private final Set<String> removedHubs = new HashSet<>();
+    private final Set<String> changedHubs = new HashSet<>();
+    private int idleHubs;
+    private int capacityHubs;
+    private int staleSensors;
+
+    public Set<String> removedHubs() {
+        return removedHubs;
+    }
+
+    public Set<String> changedHubs() {
+        return changedHubs;
+    }
+
+    public int idleHubs() {
+        return idleHubs;
+    }
+
+    public int capacityHubs() {
+        return capacityHubs;
+    }
+
+    public int staleSensors() {
+        return staleSensors;
+    }
+
+    void idleHub(String hubId) {
+        removedHubs.add(hubId);
+        changedHubs.remove(hubId);
+        idleHubs++;
+    }
+
+    void capacityHub(String hubId) {
+        removedHubs.add(hubId);
+        changedHubs.remove(hubId);
+        capacityHubs++;
+    }
+
+    void staleSensor(String hubId) {
+        changedHubs.add(hubId);
+        staleSensors++;
+    }
+}
@@ -0,0 +1,74 @@
+package ru.practicum.aggregator.handler;
+
+import kafka.deserializer.SensorEventHeader;
+import ru.yandex.practicum.kafka.telemetry.event.SensorEventAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SensorsSnapshotAvro;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Predicate;
+
+/**
+ * Состояние хабов одного потока агрегатора. Реализации не потокобезопасны: каждый поток
+ * получает свой экземпляр и пишет в него только сам. Реализация выбирается свойством
+ * {@code aggregator.state.engine}.
+ */
+public interface HubStateEngine {
+
+    /**
+     * Применяет показание датчика и возвращает {@code true}, если состояние хаба изменилось.
+     * Любое показание, даже не изменившее состояние, продлевает жизнь хаба и датчика.
+     */
+    boolean update(SensorEventAvro event);
+
+    /**
+     * То же для события, у которого разобран только заголовок. По умолчанию событие
+     * декодируется полностью; движки, хранящие показания байтами, сравнивают их без декодирования.
+     */
+    default boolean update(SensorEventHeader event) {
+        return update(event.decode());
+    }
+
+    /**
+     * Удаляет датчик из состояния хаба и возвращает {@code true}, если он там был.
+     */
+    boolean removeSensor(String hubId, String sensorId);
+
+    /**
+     * Удаляет хабы без показаний с {@code idleHubBefore}, датчики без показаний с
+     * {@code staleSensorBefore} (время обработки, мс), а затем давно не присылавшие
+     * показаний хабы, пока датчиков больше {@code maxSensors}. Нулевые границы отключают
+     * соответствующее правило. Хаб, лишившийся всех датчиков, удаляется целиком.
+     */
+    Eviction evict(long idleHubBefore, long staleSensorBefore, int maxSensors);
+
+    int hubCount();
+
+    int sensorCount();
+
+    /**
+     * Текущий снапшот хаба. Может возвращать изменяемый объект, который реализация
+     * обновит при следующем {@link #update}, поэтому его нужно использовать сразу.
+     */
+    Optional<SensorsSnapshotAvro> snapshot(String hubId);
+
+    /**
+     * Снапшот хаба, уже закодированный в двоичный Avro, если движок умеет собирать его
+     * из хранимых байтов. Пустой результат означает, что нужно отправить {@link #snapshot}.
+     */
+    default Optional<byte[]> encodedSnapshot(String hubId) {
+        return Optional.empty();
+    }
+
+    /**
+     * Убирает из состояния хабы, подходящие под фильтр, и возвращает их снапшоты.
+     */
+    Map<String, SensorsSnapshotAvro> extractHubs(Predicate<String> hubIdFilter);
+
+    /**
+     * Снапшоты хабов, подходящих под фильтр, без удаления из состояния.
+     */
+    Map<String, SensorsSnapshotAvro> copyHubs(Predicate<String> hubIdFilter);
+
+    void importHubs(Map<String, SensorsSnapshotAvro> hubSnapshots);
+}
@@ -0,0 +1,255 @@
+package ru.practicum.aggregator.handler;
+
+import kafka.deserializer.SensorEventHeader;
+import kafka.deserializer.SnapshotDeserializer;
+import org.apache.avro.Schema;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.DatumWriter;
+import org.apache.avro.io.EncoderFactory;
+import org.apache.avro.specific.SpecificDatumWriter;
+import org.springframework.beans.factory.config.ConfigurableBeanFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Scope;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.kafka.telemetry.event.SensorEventAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SensorStateAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SensorsSnapshotAvro;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Predicate;
+
+/**
+ * Состояние хабов, в котором показания датчиков хранятся байтами Avro, как они пришли
+ * в событии. Вместе с {@link kafka.deserializer.SensorEventHeaderDeserializer} событие
+ * не декодируется целиком: изменение определяется сравнением байтов, а снапшот
+ * кодируется вручную, с подстановкой хранимых байтов показаний в поле {@code data}:
+ * порядок ветвей объединения в событии и в состоянии датчика совпадает.
+ */
+@Component
+@Scope(ConfigurableBeanFactory.SCOPE_PROTOTYPE)
+@ConditionalOnProperty(name = "aggregator.state.engine", havingValue = "raw")
+public class RawHubStateEngine implements HubStateEngine {
+    private static final Schema PAYLOAD_SCHEMA = SensorStateAvro.getClassSchema().getField("data").schema();
+    private static final int INITIAL_BUFFER_SIZE = 256;
+
+    private final Map<String, Hub> hubs = new LinkedHashMap<>(16, 0.75f, true);
+    private final DatumWriter<Object> payloadWriter = new SpecificDatumWriter<>(PAYLOAD_SCHEMA);
+    private final SnapshotDeserializer snapshotDeserializer = new SnapshotDeserializer();
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(INITIAL_BUFFER_SIZE);
+    private BinaryEncoder encoder;
+    private int sensorCount;
+
+    @Override
+    public boolean update(SensorEventHeader event) {
+        Sensor sensor = touch(event.getHubId(), event.getId());
+        if (sensor.payload != null
+                && (sensor.timestamp > event.getTimestamp() || event.payloadEquals(sensor.payload))) {
+            return false;
+        }
+        if (sensor.payload == null || sensor.payload.length != event.payloadLength()) {
+            sensor.payload = new byte[event.payloadLength()];
+        }
+        event.copyPayload(sensor.payload);
+        return changed(event.getHubId(), sensor, event.getTimestamp());
+    }
+
+    @Override
+    public boolean update(SensorEventAvro event) {
+        byte[] payload = encodePayload(event.getPayload());
+        Sensor sensor = touch(event.getHubId(), event.getId());
+        if (sensor.payload != null
+                && (sensor.timestamp > event.getTimestamp() || Arrays.equals(sensor.payload, payload))) {
+            return false;
+        }
+        sensor.payload = payload;
+        return changed(event.getHubId(), sensor, event.getTimestamp());
+    }
+
+    @Override
+    public boolean removeSensor(String hubId, String sensorId) {
+        Hub hub = hubs.get(hubId);
+        if (hub == null || hub.sensors.remove(sensorId) == null) {
+            return false;
+        }
+        sensorCount--;
+        return true;
+    }
+
+    @Override
+    public Eviction evict(long idleHubBefore, long staleSensorBefore, int maxSensors) {
+        Eviction eviction = new Eviction();
+        for (Iterator<Map.Entry<String, Hub>> it = hubs.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<String, Hub> entry = it.next();
+            Hub hub = entry.getValue();
+            if (hub.lastSeen < idleHubBefore) {
+                sensorCount -= hub.sensors.size();
+                it.remove();
+                eviction.idleHub(entry.getKey());
+                continue;
+            }
+            if (staleSensorBefore > 0) {
+                hub.sensors.values().removeIf(sensor -> {
+                    if (sensor.lastSeen < staleSensorBefore) {
+                        sensorCount--;
+                        eviction.staleSensor(entry.getKey());
+                        return true;
+                    }
+                    return false;
+                });
+                if (hub.sensors.isEmpty()) {
+                    it.remove();
+                    eviction.idleHub(entry.getKey());
+                }
+            }
+        }
+        // Итерация по порядку доступа начинается с самых давно обновлявшихся хабов
+        for (Iterator<Map.Entry<String, Hub>> it = hubs.entrySet().iterator();
+             maxSensors > 0 && sensorCount > maxSensors && it.hasNext(); ) {
+            Map.Entry<String, Hub> entry = it.next();
+            sensorCount -= entry.getValue().sensors.size();
+            it.remove();
+            eviction.capacityHub(entry.getKey());
+        }
+        return eviction;
+    }
+
+    @Override
+    public int hubCount() {
+        return hubs.size();
+    }
+
+    @Override
+    public int sensorCount() {
+        return sensorCount;
+    }
+
+    @Override
+    public Optional<byte[]> encodedSnapshot(String hubId) {
+        Hub hub = hubs.get(hubId);
+        return hub == null ? Optional.empty() : Optional.of(encode(hubId, hub));
+    }
+
+    @Override
+    public Optional<SensorsSnapshotAvro> snapshot(String hubId) {
+        return encodedSnapshot(hubId).map(bytes -> snapshotDeserializer.deserialize(null, bytes));
+    }
+
+    @Override
+    public Map<String, SensorsSnapshotAvro> extractHubs(Predicate<String> hubIdFilter) {
+        Map<String, SensorsSnapshotAvro> extracted = copyHubs(hubIdFilter);
+        extracted.keySet().forEach(hubId -> sensorCount -= hubs.remove(hubId).sensors.size());
+        return extracted;
+    }
+
+    @Override
+    public Map<String, SensorsSnapshotAvro> copyHubs(Predicate<String> hubIdFilter) {
+        Map<String, SensorsSnapshotAvro> copy = new HashMap<>();
+        hubs.forEach((hubId, hub) -> {
+            if (hubIdFilter.test(hubId)) {
+                copy.put(hubId, snapshotDeserializer.deserialize(null, encode(hubId, hub)));
+            }
+        });
+        return copy;
+    }
+
+    @Override
+    public void importHubs(Map<String, SensorsSnapshotAvro> hubSnapshots) {
+        long now = System.currentTimeMillis();
+        hubSnapshots.forEach((hubId, snapshot) -> {
+            Hub hub = new Hub();
+            hub.timestamp = snapshot.getTimestamp();
+            hub.lastSeen = now;
+            snapshot.getSensorsState().forEach((sensorId, state) -> {
+                Sensor sensor = new Sensor();
+                sensor.timestamp = state.getTimestamp();
+                sensor.lastSeen = now;
+                sensor.payload = encodePayload(state.getData());
+                hub.sensors.put(sensorId, sensor);
+            });
+            Hub replaced = hubs.put(hubId, hub);
+            sensorCount += hub.sensors.size() - (replaced != null ? replaced.sensors.size() : 0);
+        });
+    }
+
+    private Sensor touch(String hubId, String sensorId) {
+        long now = System.currentTimeMillis();
+        Hub hub = hubs.get(hubId);
+        if (hub == null) {
+            hub = new Hub();
+            hubs.put(hubId, hub);
+        }
+        hub.lastSeen = now;
+        Sensor sensor = hub.sensors.get(sensorId);
+        if (sensor == null) {
+            sensor = new Sensor();
+            hub.sensors.put(sensorId, sensor);
+            sensorCount++;
+        }
+        sensor.lastSeen = now;
+        return sensor;
+    }
+
+    private boolean changed(String hubId, Sensor sensor, long timestamp) {
+        sensor.timestamp = timestamp;
+        hubs.get(hubId).timestamp = timestamp;
+        return true;
+    }
+
+    /**
+     * Кодирует снапшот так же, как {@code SpecificDatumWriter} для {@link SensorsSnapshotAvro}:
+     * hubId, timestamp и один блок карты состояний, где показания датчика записываются
+     * хранимыми байтами без перекодирования.
+     */
+    private byte[] encode(String hubId, Hub hub) {
+        try {
+            buffer.reset();
+            encoder = EncoderFactory.get().binaryEncoder(buffer, encoder);
+            encoder.writeString(hubId);
+            encoder.writeLong(hub.timestamp);
+            encoder.writeMapStart();
+            encoder.setItemCount(hub.sensors.size());
+            for (Map.Entry<String, Sensor> entry : hub.sensors.entrySet()) {
+                encoder.startItem();
+                encoder.writeString(entry.getKey());
+                encoder.writeLong(entry.getValue().timestamp);
+                encoder.writeFixed(entry.getValue().payload);
+            }
+            encoder.writeMapEnd();
+            encoder.flush();
+            return buffer.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalStateException("Не удалось закодировать снапшот хаба " + hubId, e);
+        }
+    }
+
+    private byte[] encodePayload(Object payload) {
+        try {
+            buffer.reset();
+            encoder = EncoderFactory.get().binaryEncoder(buffer, encoder);
+            payloadWriter.write(payload, encoder);
+            encoder.flush();
+            return buffer.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalStateException("Не удалось закодировать показания датчика", e);
+        }
+    }
+
+    private static final class Hub {
+        private final Map<String, Sensor> sensors = new HashMap<>();
+        private long timestamp;
+        private long lastSeen;
+    }
+
+    private static final class Sensor {
+        private byte[] payload;
+        private long timestamp;
+        private long lastSeen;
+    }
+}
@@ -1,19 +1,116 @@
 package ru.practicum.aggregator.handler;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.config.ConfigurableBeanFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Component;
 import ru.yandex.practicum.kafka.telemetry.event.SensorEventAvro;
 import ru.yandex.practicum.kafka.telemetry.event.SensorStateAvro;
 import ru.yandex.practicum.kafka.telemetry.event.SensorsSnapshotAvro;
 
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Optional;
+import java.util.function.Predicate;
 
+/**
+ * Состояние хабов в виде Avro-снапшотов, которые обновляются на месте. Время последних
+ * показаний хабов и датчиков хранится отдельно, в порядке обращения, для вытеснения.
+ */
 @Slf4j
 @Component
-public class SensorEventHandler {
+@Scope(ConfigurableBeanFactory.SCOPE_PROTOTYPE)
+@ConditionalOnProperty(name = "aggregator.state.engine", havingValue = "avro", matchIfMissing = true)
+public class SensorEventHandler implements HubStateEngine {
     private final Map<String, SensorsSnapshotAvro> snapshots = new HashMap<>();
+    private final Map<String, HubActivity> activity = new LinkedHashMap<>(16, 0.75f, true);
+
+    @Override
+    public boolean update(SensorEventAvro event) {
+        HubActivity hub = activity.computeIfAbsent(event.getHubId(), id -> new HubActivity());
+        hub.lastSeen = System.currentTimeMillis();
+        hub.sensors.put(event.getId(), hub.lastSeen);
+        return updateState(event).isPresent();
+    }
+
+    @Override
+    public boolean removeSensor(String hubId, String sensorId) {
+        HubActivity hub = activity.get(hubId);
+        if (hub != null) {
+            hub.sensors.remove(sensorId);
+        }
+        SensorsSnapshotAvro snapshot = snapshots.get(hubId);
+        return snapshot != null && snapshot.getSensorsState().remove(sensorId) != null;
+    }
+
+    @Override
+    public Eviction evict(long idleHubBefore, long staleSensorBefore, int maxSensors) {
+        Eviction eviction = new Eviction();
+        for (Iterator<Map.Entry<String, HubActivity>> it = activity.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<String, HubActivity> entry = it.next();
+            String hubId = entry.getKey();
+            HubActivity hub = entry.getValue();
+            if (hub.lastSeen < idleHubBefore) {
+                it.remove();
+                snapshots.remove(hubId);
+                eviction.idleHub(hubId);
+                continue;
+            }
+            if (staleSensorBefore > 0) {
+                SensorsSnapshotAvro snapshot = snapshots.get(hubId);
+                hub.sensors.entrySet().removeIf(sensor -> {
+                    if (sensor.getValue() < staleSensorBefore) {
+                        if (snapshot != null) {
+                            snapshot.getSensorsState().remove(sensor.getKey());
+                        }
+                        eviction.staleSensor(hubId);
+                        return true;
+                    }
+                    return false;
+                });
+                if (hub.sensors.isEmpty()) {
+                    it.remove();
+                    snapshots.remove(hubId);
+                    eviction.idleHub(hubId);
+                }
+            }
+        }
+        // Итерация по порядку доступа начинается с самых давно обновлявшихся хабов
+        int sensors = sensorCount();
+        for (Iterator<Map.Entry<String, HubActivity>> it = activity.entrySet().iterator();
+             maxSensors > 0 && sensors > maxSensors && it.hasNext(); ) {
+            Map.Entry<String, HubActivity> entry = it.next();
+            SensorsSnapshotAvro snapshot = snapshots.remove(entry.getKey());
+            if (snapshot != null) {
+                sensors -= snapshot.getSensorsState().size();
+            }
+            it.remove();
+            eviction.capacityHub(entry.getKey());
+        }
+        return eviction;
+    }
+
+    @Override
+    public int hubCount() {
+        return snapshots.size();
+    }
+
+    @Override
+    public int sensorCount() {
+        int sensors = 0;
+        for (SensorsSnapshotAvro snapshot : snapshots.values()) {
+            sensors += snapshot.getSensorsState().size();
+        }
+        return sensors;
+    }
+
+    @Override
+    public Optional<SensorsSnapshotAvro> snapshot(String hubId) {
+        return Optional.ofNullable(snapshots.get(hubId));
+    }
 
     public Optional<SensorsSnapshotAvro> updateState(SensorEventAvro event) {
         String hubId = event.getHubId();
@@ -36,6 +133,43 @@ public class SensorEventHandler {
         }
     }
 
+    @Override
+    public Map<String, SensorsSnapshotAvro> extractHubs(Predicate<String> hubIdFilter) {
+        Map<String, SensorsSnapshotAvro> extracted = new HashMap<>();
+        activity.keySet().removeIf(hubIdFilter);
+        snapshots.entrySet().removeIf(entry -> {
+            if (hubIdFilter.test(entry.getKey())) {
+                extracted.put(entry.getKey(), entry.getValue());
+                return true;
+            }
+            return false;
+        });
+        return extracted;
+    }
+
+    @Override
+    public Map<String, SensorsSnapshotAvro> copyHubs(Predicate<String> hubIdFilter) {
+        Map<String, SensorsSnapshotAvro> copy = new HashMap<>();
+        snapshots.forEach((hubId, snapshot) -> {
+            if (hubIdFilter.test(hubId)) {
+                copy.put(hubId, snapshot);
+            }
+        });
+        return copy;
+    }
+
+    @Override
+    public void importHubs(Map<String, SensorsSnapshotAvro> hubSnapshots) {
+        long now = System.currentTimeMillis();
+        hubSnapshots.forEach((hubId, snapshot) -> {
+            HubActivity hub = new HubActivity();
+            hub.lastSeen = now;
+            snapshot.getSensorsState().keySet().forEach(sensorId -> hub.sensors.put(sensorId, now));
+            activity.put(hubId, hub);
+        });
+        snapshots.putAll(hubSnapshots);
+    }
+
     private SensorsSnapshotAvro createNewSnapshot(SensorEventAvro event) {
         Map<String, SensorStateAvro> sensorStates = new HashMap<>();
         SensorStateAvro sensorState = createSensorState(event);
@@ -73,4 +207,9 @@ public class SensorEventHandler {
                 .setData(event.getPayload())
                 .build();
     }
+
+    private static final class HubActivity {
+        private final Map<String, Long> sensors = new HashMap<>();
+        private long lastSeen;
+    }
 }
@@ -1,81 +1,167 @@
 package ru.practicum.aggregator.starter;
 
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.avro.specific.SpecificRecordBase;
 import org.apache.kafka.clients.consumer.Consumer;
-import org.apache.kafka.clients.consumer.ConsumerRecord;
-import org.apache.kafka.clients.consumer.ConsumerRecords;
 import org.apache.kafka.clients.producer.Producer;
-import org.apache.kafka.clients.producer.ProducerRecord;
-import org.apache.kafka.common.errors.WakeupException;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
-import ru.practicum.aggregator.handler.SensorEventHandler;
-import ru.yandex.practicum.kafka.telemetry.event.SensorEventAvro;
-import ru.yandex.practicum.kafka.telemetry.event.SensorsSnapshotAvro;
+import ru.practicum.aggregator.config.TransactionalProducerFactory;
+import ru.practicum.aggregator.handler.HubStateEngine;
+import ru.practicum.aggregator.state.ChangelogRestorer;
+import ru.practicum.aggregator.state.PartitionCheckpointStore;
 
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Optional;
 
+/**
+ * Запускает {@code aggregator.workers} потоков обработки. Потоки состоят в одной группе
+ * потребителей и делят между собой партиции топика событий датчиков. Продюсер общий,
+ * а в транзакционном режиме ({@code aggregator.transactions.enabled}) у каждого потока свой.
+ * Вытеснение состояния настраивается в {@code aggregator.eviction}.
+ */
 @Slf4j
 @Component
 @RequiredArgsConstructor
 public class AggregatorStarter {
-    private final Consumer<String, SpecificRecordBase> consumer;
-    private final SensorEventHandler eventHandler;
-    private final Producer<String, SpecificRecordBase> producer;
+    private static final String SHARED_TRANSACTIONAL_ID_PREFIX = "aggregator";
+
+    private final ObjectProvider<Consumer<String, Object>> consumers;
+    private final ObjectProvider<HubStateEngine> eventHandlers;
+    private final Producer<String, Object> producer;
+    private final TransactionalProducerFactory transactionalProducers;
+    private final PartitionCheckpointStore checkpoints;
+    private final ChangelogRestorer changelog;
+    private final MeterRegistry meterRegistry;
     @Value("${aggregator.topic.telemetry-snapshots}")
     private String snapshotsTopic;
     @Value("${topic.telemetry-sensors}")
     private String sensorsTopic;
+    @Value("${topic.telemetry-hubs:telemetry.hubs.v1}")
+    private String hubsTopic;
+    @Value("${aggregator.workers:1}")
+    private int workerCount;
+    @Value("${aggregator.state.checkpoint-interval:10s}")
+    private Duration checkpointInterval;
+    @Value("${aggregator.state.handoff-ttl:5m}")
+    private Duration handoffTtl;
+    @Value("${aggregator.transactions.enabled:false}")
+    private boolean transactional;
+    @Value("${aggregator.transactions.id-prefix:}")
+    private String transactionalIdPrefix;
+    @Value("${aggregator.coalescing.enabled:true}")
+    private boolean coalescingEnabled;
+    @Value("${aggregator.coalescing.interval:0s}")
+    private Duration coalescingInterval;
+    @Value("${aggregator.coalescing.max-delay:1s}")
+    private Duration coalescingMaxDelay;
+    @Value("${aggregator.deltas.enabled:false}")
+    private boolean deltasEnabled;
+    @Value("${aggregator.deltas.full-snapshots:true}")
+    private boolean fullSnapshots;
+    @Value("${aggregator.deltas.full-every:100}")
+    private int fullEvery;
+    @Value("${aggregator.deltas.full-interval:1m}")
+    private Duration fullInterval;
+    @Value("${aggregator.topic.telemetry-snapshot-deltas:telemetry.snapshots.delta.v1}")
+    private String deltasTopic;
+    @Value("${aggregator.reorder.enabled:false}")
+    private boolean reorderEnabled;
+    @Value("${aggregator.reorder.allowed-lateness:2s}")
+    private Duration allowedLateness;
+    @Value("${aggregator.reorder.max-events-per-hub:256}")
+    private int maxEventsPerHub;
+    @Value("${aggregator.reorder.max-hold:5s}")
+    private Duration maxHold;
+    @Value("${aggregator.reorder.max-clock-skew:1s}")
+    private Duration maxClockSkew;
+    @Value("${aggregator.eviction.interval:10s}")
+    private Duration evictionInterval;
+    @Value("${aggregator.eviction.hub-ttl:0s}")
+    private Duration hubTtl;
+    @Value("${aggregator.eviction.sensor-ttl:0s}")
+    private Duration sensorTtl;
+    @Value("${aggregator.eviction.max-sensors:0}")
+    private int maxSensors;
+    @Value("${aggregator.eviction.device-removed-events:true}")
+    private boolean deviceRemovedEvents;
 
     public void start() {
-        try {
-            consumer.subscribe(List.of(sensorsTopic));
-            log.info("Subscribed to topic: {}", sensorsTopic);
-
-            Runtime.getRuntime().addShutdownHook(new Thread(consumer::wakeup));
-
-            while (true) {
-                ConsumerRecords<String, SpecificRecordBase> records = consumer.poll(Duration.ofMillis(1000));
+        String idPrefix = transactional ? transactionalIdPrefix() : null;
+        registerCoalescingRatios();
+        CoalescingSettings coalescing = new CoalescingSettings(coalescingEnabled, coalescingInterval,
+                coalescingMaxDelay);
+        EvictionSettings eviction = new EvictionSettings(evictionInterval, hubTtl, sensorTtl, maxSensors,
+                deviceRemovedEvents);
+        DeltaSettings deltas = new DeltaSettings(deltasEnabled, !deltasEnabled || fullSnapshots, deltasTopic,
+                fullEvery, fullInterval);
+        ReorderSettings reorder = new ReorderSettings(reorderEnabled, allowedLateness, maxEventsPerHub, maxHold,
+                maxClockSkew);
+        HubStateHandoff handoff = new HubStateHandoff(handoffTtl);
+        List<AggregatorWorker> workers = new ArrayList<>(workerCount);
+        List<Thread> threads = new ArrayList<>(workerCount);
+        for (int i = 0; i < workerCount; i++) {
+            Producer<String, Object> workerProducer = transactional
+                    ? transactionalProducers.create(idPrefix + "-" + i)
+                    : producer;
+            String name = "aggregator-worker-" + i;
+            AggregatorWorker worker = new AggregatorWorker(consumers.getObject(), eventHandlers.getObject(),
+                    workerProducer, transactional, handoff, checkpoints, changelog, sensorsTopic, hubsTopic,
+                    snapshotsTopic, checkpointInterval, coalescing, eviction, deltas, reorder, name, meterRegistry);
+            workers.add(worker);
+            threads.add(new Thread(worker, name));
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> workers.forEach(AggregatorWorker::shutdown)));
 
-                for (ConsumerRecord<String, SpecificRecordBase> record : records) {
-                    log.info("Processing message: hubId={}, timestamp={}", record.key(), record.timestamp());
-                    SensorEventAvro event = (SensorEventAvro) record.value();
-                    log.info("Received SensorEventAvro: hubId={}, sensorId={}, timestamp={}",
-                            event.getHubId(), event.getId(), event.getTimestamp());
-                    Optional<SensorsSnapshotAvro> snapshot = eventHandler.updateState(event);
-                    log.info("Generated snapshot: {}", snapshot);
-                    if (snapshot.isPresent()) {
-                        log.info("Sending snapshot to topic: {}, hubId: {}, timestamp: {}",
-                                snapshotsTopic, event.getHubId(), event.getTimestamp());
-                        ProducerRecord<String, SpecificRecordBase> message = new ProducerRecord<>(
-                                snapshotsTopic,
-                                null,
-                                event.getTimestamp(),
-                                event.getHubId(),
-                                snapshot.get());
-                        producer.send(message);
-                    }
-                }
-                consumer.commitSync();
+        log.info("Starting {} aggregator workers, transactional: {}, transactional id prefix: {}", workerCount,
+                transactional, idPrefix);
+        threads.forEach(Thread::start);
+        try {
+            for (Thread thread : threads) {
+                thread.join();
             }
-        } catch (WakeupException ignored) {
-            log.info("Consumer wakeup triggered, shutting down...");
-        } catch (Exception e) {
-            log.error("Error processing sensor events", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            workers.forEach(AggregatorWorker::shutdown);
         } finally {
-            try {
-                producer.flush();
-                consumer.commitSync();
-            } finally {
-                log.info("Closing consumer");
-                consumer.close();
-                log.info("Closing producer");
-                producer.close(Duration.ofSeconds(10));
-            }
+            log.info("Closing producer");
+            producer.close(Duration.ofSeconds(10));
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Префикс transactional.id должен быть своим у каждого экземпляра: иначе потоки с одним номером
+     * на разных узлах фенсят друг друга. Общий префикс по умолчанию не допускается.
+     */
+    private String transactionalIdPrefix() {
+        if (transactionalIdPrefix.isBlank() || SHARED_TRANSACTIONAL_ID_PREFIX.equals(transactionalIdPrefix)) {
+            throw new IllegalStateException("aggregator.transactions.enabled требует уникальный для экземпляра "
+                    + "aggregator.transactions.id-prefix (AGGREGATOR_TRANSACTIONAL_ID или HOSTNAME), сейчас: '"
+                    + transactionalIdPrefix + "'");
+        }
+        return transactionalIdPrefix;
+    }
+
+    /**
+     * Доли отправленных снапшотов относительно принятых событий и изменений состояния,
+     * по счётчикам, которые пишут потоки агрегатора.
+     */
+    private void registerCoalescingRatios() {
+        Gauge.builder("aggregator.snapshots.per-event",
+                        () -> ratio(meterRegistry.counter("aggregator.snapshots.emitted").count(),
+                                meterRegistry.counter("aggregator.events").count()))
+                .register(meterRegistry);
+        Gauge.builder("aggregator.snapshots.per-change",
+                        () -> ratio(meterRegistry.counter("aggregator.snapshots.emitted").count(),
+                                meterRegistry.counter("aggregator.snapshot.changes").count()))
+                .register(meterRegistry);
+    }
+
+    private static double ratio(double numerator, double denominator) {
+        return denominator == 0 ? 0 : numerator / denominator;
+    }
+}
@@ -0,0 +1,588 @@
+package ru.practicum.aggregator.starter;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import kafka.deserializer.SensorEventHeader;
+import kafka.partitioner.HubIdPartitioner;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.KafkaException;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.AuthorizationException;
+import org.apache.kafka.common.errors.OutOfOrderSequenceException;
+import org.apache.kafka.common.errors.ProducerFencedException;
+import org.apache.kafka.common.errors.WakeupException;
+import ru.practicum.aggregator.handler.Eviction;
+import ru.practicum.aggregator.handler.HubStateEngine;
+import ru.practicum.aggregator.state.ChangelogRestorer;
+import ru.practicum.aggregator.state.PartitionCheckpointStore;
+import ru.yandex.practicum.kafka.telemetry.event.DeviceRemovedEventAvro;
+import ru.yandex.practicum.kafka.telemetry.event.HubEventAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SensorEventAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SensorEventBatchAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SensorReadingAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SensorsSnapshotAvro;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+/**
+ * Цикл обработки одного потока агрегатора. У потока свой потребитель и своё состояние
+ * хабов; группа потребителей раздаёт потокам непересекающиеся партиции, а так как топик
+ * партиционирован по hub_id, каждый хаб обновляет ровно один поток.
+ * <p>
+ * Состояние изменённых партиций периодически сохраняется в {@link PartitionCheckpointStore},
+ * а ссылка на контрольную точку уходит в метаданные коммита. При назначении партиции
+ * состояние берётся из передачи между потоками, затем из контрольной точки, затем из
+ * журнала изменений. После контрольной точки события до закоммиченного смещения
+ * проигрываются заново только для восстановления состояния, без отправки снапшотов.
+ * <p>
+ * В транзакционном режиме у потока свой транзакционный продюсер: снапшоты пачки poll
+ * и смещения этой пачки фиксируются одной транзакцией. При сбое транзакция
+ * откатывается, а состояние назначенных партиций восстанавливается заново.
+ * <p>
+ * Поток также читает одноимённые партиции топика событий хабов и удаляет из состояния
+ * датчики по {@link DeviceRemovedEventAvro}. Раз в {@code aggregator.eviction.interval}
+ * вытесняются молчащие хабы и датчики, а при превышении лимита датчиков — давно не
+ * обновлявшиеся хабы; для вытесненных хабов в журнал изменений пишутся tombstone-записи.
+ * Состояние, контрольные точки и передача между потоками относятся только к партициям
+ * топика датчиков.
+ * <p>
+ * С {@code aggregator.deltas.enabled} вместе с полным снапшотом (или вместо него) в топик
+ * дельт уходит {@link ru.yandex.practicum.kafka.telemetry.event.SensorsSnapshotDeltaAvro}
+ * с изменёнными с прошлой отправки датчиками, см. {@link SnapshotDeltaTracker}.
+ * <p>
+ * С {@code aggregator.reorder.enabled} события датчиков применяются через {@link ReorderBuffer}
+ * в порядке времени события; коммит и контрольная точка не обгоняют неприменённые события.
+ */
+@Slf4j
+class AggregatorWorker implements Runnable {
+    private static final Duration MAX_POLL_TIMEOUT = Duration.ofMillis(1000);
+
+    private final Consumer<String, Object> consumer;
+    private final HubStateEngine eventHandler;
+    private final Producer<String, Object> producer;
+    private final boolean transactional;
+    private final HubStateHandoff handoff;
+    private final PartitionCheckpointStore checkpoints;
+    private final ChangelogRestorer changelog;
+    private final String sensorsTopic;
+    private final String hubsTopic;
+    private final String snapshotsTopic;
+    private final long checkpointIntervalNanos;
+    private final SnapshotCoalescer coalescer;
+    private final EvictionSettings eviction;
+    private final DeltaSettings deltas;
+    private final SnapshotDeltaTracker deltaTracker;
+    private final ReorderBuffer reorder;
+    private final Counter events;
+    private final Counter removedSensors;
+    private final Counter evictedIdleHubs;
+    private final Counter evictedCapacityHubs;
+    private final Counter evictedStaleSensors;
+    private final AtomicInteger residentHubs = new AtomicInteger();
+    private final AtomicInteger residentSensors = new AtomicInteger();
+    private final Map<TopicPartition, OffsetAndMetadata> currentOffsets = new HashMap<>();
+    private final Map<TopicPartition, String> checkpointTokens = new HashMap<>();
+    private final Map<TopicPartition, Long> replayUntil = new HashMap<>();
+    private final Set<TopicPartition> dirtyPartitions = new HashSet<>();
+    private final Set<TopicPartition> removalPartitions = new HashSet<>();
+    private long lastCheckpointNanos = System.nanoTime();
+    private long lastEvictionNanos = System.nanoTime();
+    private boolean inTransaction;
+    private int partitionCount;
+
+    AggregatorWorker(Consumer<String, Object> consumer,
+                     HubStateEngine eventHandler,
+                     Producer<String, Object> producer,
+                     boolean transactional,
+                     HubStateHandoff handoff,
+                     PartitionCheckpointStore checkpoints,
+                     ChangelogRestorer changelog,
+                     String sensorsTopic,
+                     String hubsTopic,
+                     String snapshotsTopic,
+                     Duration checkpointInterval,
+                     CoalescingSettings coalescing,
+                     EvictionSettings eviction,
+                     DeltaSettings deltas,
+                     ReorderSettings reorder,
+                     String name,
+                     MeterRegistry meterRegistry) {
+        this.consumer = consumer;
+        this.eventHandler = eventHandler;
+        this.producer = producer;
+        this.transactional = transactional;
+        this.handoff = handoff;
+        this.checkpoints = checkpoints;
+        this.changelog = changelog;
+        this.sensorsTopic = sensorsTopic;
+        this.hubsTopic = hubsTopic;
+        this.snapshotsTopic = snapshotsTopic;
+        this.checkpointIntervalNanos = checkpointInterval.toNanos();
+        this.coalescer = new SnapshotCoalescer(this::emit, coalescing.enabled(), coalescing.interval(),
+                coalescing.maxDelay(), meterRegistry);
+        this.eviction = eviction;
+        this.deltas = deltas;
+        this.deltaTracker = new SnapshotDeltaTracker(deltas.fullEvery(), deltas.fullInterval());
+        this.reorder = new ReorderBuffer(this::apply, reorder, name, meterRegistry);
+        this.events = meterRegistry.counter("aggregator.events");
+        this.removedSensors = meterRegistry.counter("aggregator.state.evicted", "reason", "device-removed");
+        this.evictedIdleHubs = meterRegistry.counter("aggregator.state.evicted", "reason", "idle-hub");
+        this.evictedCapacityHubs = meterRegistry.counter("aggregator.state.evicted", "reason", "capacity");
+        this.evictedStaleSensors = meterRegistry.counter("aggregator.state.evicted", "reason", "stale-sensor");
+        Gauge.builder("aggregator.state.hubs", residentHubs, AtomicInteger::get)
+                .tag("worker", name)
+                .register(meterRegistry);
+        Gauge.builder("aggregator.state.sensors", residentSensors, AtomicInteger::get)
+                .tag("worker", name)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void run() {
+        try {
+            if (transactional) {
+                producer.initTransactions();
+            }
+            List<String> topics = eviction.deviceRemovedEvents()
+                    ? List.of(sensorsTopic, hubsTopic)
+                    : List.of(sensorsTopic);
+            consumer.subscribe(topics, new HubStateRebalanceListener());
+            log.info("Subscribed to topics: {}", topics);
+
+            while (true) {
+                ConsumerRecords<String, Object> records =
+                        consumer.poll(coalescer.pollTimeout(MAX_POLL_TIMEOUT));
+                try {
+                    process(records);
+                } catch (WakeupException | ProducerFencedException | OutOfOrderSequenceException
+                         | AuthorizationException e) {
+                    throw e;
+                } catch (KafkaException e) {
+                    if (!transactional) {
+                        throw e;
+                    }
+                    log.warn("Aggregator transaction failed, rolling back to committed state", e);
+                    recover();
+                }
+            }
+        } catch (WakeupException ignored) {
+            log.info("Consumer wakeup triggered, shutting down...");
+        } catch (Exception e) {
+            log.error("Error processing sensor events", e);
+        } finally {
+            try {
+                reorder.flush(hubId -> true);
+                coalescer.flush(partition -> true);
+                checkpoint(Set.copyOf(dirtyPartitions));
+                commit(currentOffsets.keySet());
+            } catch (Exception e) {
+                log.warn("Failed to commit aggregator state on shutdown", e);
+            } finally {
+                log.info("Closing consumer");
+                consumer.close();
+                if (transactional) {
+                    producer.close(Duration.ofSeconds(10));
+                }
+            }
+        }
+    }
+
+    void shutdown() {
+        consumer.wakeup();
+    }
+
+    private void process(ConsumerRecords<String, Object> records) {
+        for (ConsumerRecord<String, Object> record : records) {
+            log.debug("Processing message: hubId={}, timestamp={}", record.key(), record.timestamp());
+            TopicPartition partition = new TopicPartition(record.topic(), record.partition());
+            if (record.value() instanceof HubEventAvro hubEvent) {
+                process(hubEvent, partition, record.offset());
+            } else if (record.value() instanceof SensorEventBatchAvro batch) {
+                for (SensorReadingAvro reading : batch.getReadings()) {
+                    SensorEventAvro event = unpack(batch, reading);
+                    reorder.add(event, event.getHubId(), event.getTimestamp(), partition, record.offset());
+                }
+            } else if (record.value() instanceof SensorEventHeader header) {
+                reorder.add(header, header.getHubId(), header.getTimestamp(), partition, record.offset());
+            } else {
+                SensorEventAvro event = (SensorEventAvro) record.value();
+                reorder.add(event, event.getHubId(), event.getTimestamp(), partition, record.offset());
+            }
+            currentOffsets.put(partition, new OffsetAndMetadata(record.offset() + 1));
+        }
+        reorder.flushDue();
+        coalescer.flushDue();
+        if (System.nanoTime() - lastEvictionNanos >= eviction.interval().toNanos()) {
+            evict();
+        }
+        if (!removalPartitions.isEmpty()) {
+            checkpoint(Set.copyOf(removalPartitions));
+            removalPartitions.clear();
+        }
+        if (System.nanoTime() - lastCheckpointNanos >= checkpointIntervalNanos) {
+            lastCheckpointNanos = System.nanoTime();
+            checkpoint(Set.copyOf(dirtyPartitions));
+        }
+        if (!records.isEmpty() || inTransaction) {
+            commit(currentOffsets.keySet());
+        }
+    }
+
+    private static SensorEventAvro unpack(SensorEventBatchAvro batch, SensorReadingAvro reading) {
+        return SensorEventAvro.newBuilder()
+                .setId(reading.getId())
+                .setHubId(batch.getHubId())
+                .setTimestamp(batch.getBaseTimestamp() + reading.getTimestampDelta())
+                .setPayload(reading.getPayload())
+                .build();
+    }
+
+    private void apply(Object value, TopicPartition partition, long offset) {
+        if (value instanceof SensorEventHeader header) {
+            process(partition, offset, header.getHubId(), header.getId(), header.getTimestamp(),
+                    eventHandler.update(header));
+        } else {
+            SensorEventAvro event = (SensorEventAvro) value;
+            process(partition, offset, event.getHubId(), event.getId(), event.getTimestamp(),
+                    eventHandler.update(event));
+        }
+    }
+
+    private void process(TopicPartition partition, long offset, String hubId, String sensorId, long eventTimestamp,
+                         boolean changed) {
+        events.increment();
+        if (changed) {
+            deltaTracker.changed(hubId, sensorId);
+            if (!isReplayed(partition, offset)) {
+                coalescer.changed(partition, hubId, eventTimestamp, partition, offset);
+            }
+            dirtyPartitions.add(partition);
+        }
+    }
+
+    /**
+     * Удаляет из состояния хаба датчик, удалённый из хаба. Партиция топика хабов совпадает
+     * по номеру с партицией топика датчиков, в которой лежит состояние хаба. Контрольная точка
+     * этой партиции сохраняется до коммита смещения топика хабов: иначе после сбоя состояние
+     * восстановилось бы из прежней контрольной точки вместе с удалённым датчиком.
+     */
+    private void process(HubEventAvro hubEvent, TopicPartition source, long offset) {
+        if (!(hubEvent.getPayload() instanceof DeviceRemovedEventAvro removed)) {
+            return;
+        }
+        if (eventHandler.removeSensor(hubEvent.getHubId(), removed.getId())) {
+            TopicPartition partition = new TopicPartition(sensorsTopic, source.partition());
+            log.info("Removed sensor {} of hub {} from state", removed.getId(), hubEvent.getHubId());
+            removedSensors.increment();
+            deltaTracker.removed(hubEvent.getHubId(), removed.getId());
+            coalescer.changed(partition, hubEvent.getHubId(), hubEvent.getTimestamp(), source, offset);
+            dirtyPartitions.add(partition);
+            removalPartitions.add(partition);
+        }
+    }
+
+    /**
+     * Вытесняет молчащие хабы и датчики по настройкам {@link EvictionSettings} раз в
+     * {@code interval}, поэтому {@code maxSensors} — мягкий предел: между проходами число
+     * датчиков может его превышать на то, что успело прийти за интервал. Хабы,
+     * у которых остались датчики, отправляются обычным снапшотом, а по удалённым целиком
+     * в журнал изменений уходит tombstone, чтобы они не вернулись при восстановлении.
+     */
+    private void evict() {
+        lastEvictionNanos = System.nanoTime();
+        long now = System.currentTimeMillis();
+        Eviction result = eventHandler.evict(before(now, eviction.hubTtl()), before(now, eviction.sensorTtl()),
+                eviction.maxSensors());
+        if (!result.removedHubs().isEmpty()) {
+            coalescer.forget(result.removedHubs()::contains);
+            deltaTracker.forget(result.removedHubs()::contains);
+            reorder.discard(result.removedHubs()::contains);
+            for (String hubId : result.removedHubs()) {
+                dirtyPartitions.add(partitionOf(hubId));
+                if (changelog.isEnabled()) {
+                    beginTransaction();
+                    producer.send(new ProducerRecord<String, Object>(changelog.topic(), null, now, hubId, null));
+                }
+            }
+        }
+        for (String hubId : result.changedHubs()) {
+            TopicPartition partition = partitionOf(hubId);
+            deltaTracker.reset(hubId);
+            coalescer.changed(partition, hubId, now);
+            dirtyPartitions.add(partition);
+        }
+        evictedIdleHubs.increment(result.idleHubs());
+        evictedCapacityHubs.increment(result.capacityHubs());
+        evictedStaleSensors.increment(result.staleSensors());
+        residentHubs.set(eventHandler.hubCount());
+        residentSensors.set(eventHandler.sensorCount());
+        if (!result.removedHubs().isEmpty() || result.staleSensors() > 0) {
+            log.info("Evicted {} idle and {} capacity hubs, {} stale sensors; resident {} hubs, {} sensors",
+                    result.idleHubs(), result.capacityHubs(), result.staleSensors(),
+                    residentHubs.get(), residentSensors.get());
+        }
+    }
+
+    private static long before(long now, Duration ttl) {
+        return ttl.isZero() ? 0 : now - ttl.toMillis();
+    }
+
+    private TopicPartition partitionOf(String hubId) {
+        return new TopicPartition(sensorsTopic, HubIdPartitioner.partitionFor(hubId, partitionCount));
+    }
+
+    private boolean isReplayed(TopicPartition partition, long offset) {
+        Long until = replayUntil.get(partition);
+        if (until == null) {
+            return false;
+        }
+        if (offset < until) {
+            return true;
+        }
+        replayUntil.remove(partition);
+        return false;
+    }
+
+    /**
+     * Отправляет снапшот хаба: уже закодированный движком, если он это умеет, иначе Avro-запись.
+     * Дельта собирается из Avro-снапшота, журнал изменений всегда получает полный снапшот.
+     */
+    private void emit(String hubId, long eventTimestamp) {
+        Optional<byte[]> encoded = eventHandler.encodedSnapshot(hubId);
+        Object snapshot = encoded.isPresent() ? encoded.get() : eventHandler.snapshot(hubId).orElse(null);
+        if (snapshot == null) {
+            return;
+        }
+        beginTransaction();
+        if (deltas.fullSnapshots()) {
+            log.debug("Sending snapshot to topic: {}, hubId: {}, timestamp: {}", snapshotsTopic, hubId, eventTimestamp);
+            send(snapshotsTopic, hubId, snapshot, eventTimestamp);
+        }
+        if (deltas.enabled()) {
+            SensorsSnapshotAvro full = snapshot instanceof SensorsSnapshotAvro avro
+                    ? avro
+                    : eventHandler.snapshot(hubId).orElseThrow();
+            send(deltas.topic(), hubId, deltaTracker.delta(full, System.currentTimeMillis()), eventTimestamp);
+        }
+        if (changelog.isEnabled()) {
+            send(changelog.topic(), hubId, snapshot, eventTimestamp);
+        }
+    }
+
+    private void send(String topic, String hubId, Object snapshot, long eventTimestamp) {
+        producer.send(new ProducerRecord<>(topic, null, eventTimestamp, hubId, snapshot));
+    }
+
+    private void beginTransaction() {
+        if (transactional && !inTransaction) {
+            producer.beginTransaction();
+            inTransaction = true;
+        }
+    }
+
+    /**
+     * Фиксирует смещения партиций: в транзакционном режиме вместе с отправленными
+     * снапшотами одной транзакцией, иначе синхронным коммитом потребителя.
+     */
+    private void commit(Collection<TopicPartition> partitions) {
+        Map<TopicPartition, OffsetAndMetadata> offsets = offsetsToCommit(partitions);
+        if (!transactional) {
+            consumer.commitSync(offsets);
+            return;
+        }
+        beginTransaction();
+        producer.sendOffsetsToTransaction(offsets, consumer.groupMetadata());
+        producer.commitTransaction();
+        inTransaction = false;
+    }
+
+    /**
+     * Откатывает незавершённую транзакцию и возвращает назначенные партиции к закоммиченному
+     * состоянию: снапшоты и смещения отброшенной транзакции никто не увидит, поэтому
+     * изменения в памяти тоже нужно забыть.
+     */
+    private void recover() {
+        if (inTransaction) {
+            producer.abortTransaction();
+            inTransaction = false;
+        }
+        Set<TopicPartition> assigned = consumer.assignment();
+        for (TopicPartition partition : assigned) {
+            forget(partition);
+        }
+        Map<TopicPartition, OffsetAndMetadata> committed = consumer.committed(assigned);
+        for (TopicPartition partition : assigned) {
+            OffsetAndMetadata offset = committed.get(partition);
+            if (offset != null) {
+                consumer.seek(partition, offset.offset());
+            }
+            if (holdsState(partition)) {
+                restore(partition, offset);
+            }
+        }
+    }
+
+    /**
+     * Сохраняет состояние партиций на текущем смещении. Перед записью отправляет накопленные
+     * снапшоты и дожидается их отправки, чтобы контрольная точка не опережала то, что ушло в Kafka.
+     */
+    private void checkpoint(Collection<TopicPartition> partitions) {
+        if (!checkpoints.isEnabled() || partitions.isEmpty()) {
+            return;
+        }
+        coalescer.flush(partitions::contains);
+        producer.flush();
+        for (TopicPartition partition : partitions) {
+            long offset = positionOf(partition);
+            if (checkpoints.save(partition, offset, eventHandler.copyHubs(belongsTo(partition)))) {
+                checkpointTokens.put(partition, checkpoints.token(offset));
+            } else {
+                checkpointTokens.remove(partition);
+            }
+            dirtyPartitions.remove(partition);
+        }
+    }
+
+    private Map<TopicPartition, OffsetAndMetadata> offsetsToCommit(Collection<TopicPartition> partitions) {
+        Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>();
+        for (TopicPartition partition : partitions) {
+            offsets.put(partition, new OffsetAndMetadata(positionOf(partition),
+                    checkpointTokens.getOrDefault(partition, "")));
+        }
+        return offsets;
+    }
+
+    /**
+     * Смещение, до которого партиция обработана: следующее за последней прочитанной записью,
+     * но не дальше самого раннего события, ещё ждущего в буфере переупорядочивания, и самой
+     * ранней записи, изменение из которой ещё не отправлено коалесцером.
+     */
+    private long positionOf(TopicPartition partition) {
+        OffsetAndMetadata offset = currentOffsets.get(partition);
+        long position = offset != null ? offset.offset() : consumer.position(partition);
+        OptionalLong buffered = reorder.minBufferedOffset(partition);
+        if (buffered.isPresent()) {
+            position = Math.min(position, buffered.getAsLong());
+        }
+        OptionalLong pending = coalescer.minPendingOffset(partition);
+        return pending.isPresent() ? Math.min(position, pending.getAsLong()) : position;
+    }
+
+    private Predicate<String> belongsTo(TopicPartition partition) {
+        return hubId -> HubIdPartitioner.partitionFor(hubId, partitionCount) == partition.partition();
+    }
+
+    private boolean holdsState(TopicPartition partition) {
+        return partition.topic().equals(sensorsTopic);
+    }
+
+    private Map<String, SensorsSnapshotAvro> forget(TopicPartition partition) {
+        currentOffsets.remove(partition);
+        if (!holdsState(partition)) {
+            return Map.of();
+        }
+        reorder.discard(belongsTo(partition));
+        Map<String, SensorsSnapshotAvro> hubs = eventHandler.extractHubs(belongsTo(partition));
+        coalescer.forget(hubs::containsKey);
+        deltaTracker.forget(hubs::containsKey);
+        checkpointTokens.remove(partition);
+        replayUntil.remove(partition);
+        dirtyPartitions.remove(partition);
+        removalPartitions.remove(partition);
+        return hubs;
+    }
+
+    private void restore(TopicPartition partition, OffsetAndMetadata committed) {
+        if (committed == null) {
+            restoreFromChangelog(partition);
+            return;
+        }
+        Optional<Map<String, SensorsSnapshotAvro>> handedOff = handoff.take(partition, committed.offset());
+        if (handedOff.isPresent()) {
+            eventHandler.importHubs(handedOff.get());
+            checkpointTokens.put(partition, committed.metadata());
+            log.info("Took over state of {} hubs of {} from another worker", handedOff.get().size(), partition);
+            return;
+        }
+        Optional<PartitionCheckpointStore.Checkpoint> checkpoint = checkpoints.load(partition, committed.metadata());
+        if (checkpoint.isPresent()) {
+            eventHandler.importHubs(checkpoint.get().hubs());
+            consumer.seek(partition, checkpoint.get().offset());
+            replayUntil.put(partition, committed.offset());
+            checkpointTokens.put(partition, committed.metadata());
+            log.info("Restored state of {} hubs of {} from checkpoint at offset {}, replaying up to {}",
+                    checkpoint.get().hubs().size(), partition, checkpoint.get().offset(), committed.offset());
+            return;
+        }
+        restoreFromChangelog(partition);
+    }
+
+    private void restoreFromChangelog(TopicPartition partition) {
+        if (changelog.isEnabled()) {
+            eventHandler.importHubs(changelog.restore(partition.partition()));
+            dirtyPartitions.add(partition);
+        }
+    }
+
+    /**
+     * При отзыве партиций отправляет накопленные снапшоты, сохраняет контрольные точки,
+     * фиксирует обработанные смещения и передаёт состояние хабов этих партиций в
+     * {@link HubStateHandoff}. При назначении восстанавливает состояние партиций.
+     */
+    private class HubStateRebalanceListener implements ConsumerRebalanceListener {
+        @Override
+        public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+            if (partitions.isEmpty()) {
+                return;
+            }
+            reorder.flush(hubId -> partitions.contains(partitionOf(hubId)));
+            coalescer.flush(partitions::contains);
+            checkpoint(partitions.stream().filter(AggregatorWorker.this::holdsState).toList());
+            Map<TopicPartition, OffsetAndMetadata> revokedOffsets = offsetsToCommit(partitions);
+            commit(partitions);
+
+            int handedOff = 0;
+            for (TopicPartition partition : partitions) {
+                Map<String, SensorsSnapshotAvro> hubs = forget(partition);
+                if (holdsState(partition)) {
+                    handoff.put(partition, revokedOffsets.get(partition).offset(), hubs);
+                    handedOff += hubs.size();
+                }
+            }
+            log.info("Partitions revoked: {}, handed off state of {} hubs", partitions, handedOff);
+        }
+
+        @Override
+        public void onPartitionsAssigned(Collection<TopicPartition> partitions) {
+            if (partitions.isEmpty()) {
+                return;
+            }
+            partitionCount = consumer.partitionsFor(sensorsTopic).size();
+            Map<TopicPartition, OffsetAndMetadata> committed = consumer.committed(Set.copyOf(partitions));
+            for (TopicPartition partition : partitions) {
+                if (holdsState(partition)) {
+                    restore(partition, committed.get(partition));
+                }
+            }
+            log.info("Partitions assigned: {}", partitions);
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package ru.practicum.aggregator.starter;
+
+import java.time.Duration;
+
+/**
+ * Настройки объединения снапшотов, см. {@link SnapshotCoalescer}.
+ */
+record CoalescingSettings(boolean enabled, Duration interval, Duration maxDelay) {
+}
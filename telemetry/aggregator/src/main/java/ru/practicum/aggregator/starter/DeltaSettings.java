@@ -0,0 +1,10 @@
+package ru.practicum.aggregator.starter;
+
+import java.time.Duration;
+
+/**
+ * Настройки дельта-снапшотов, см. {@link SnapshotDeltaTracker}. {@code fullSnapshots}
+ * оставляет отправку полных снапшотов в основной топик для потребителей, не читающих дельты.
+ */
+record DeltaSettings(boolean enabled, boolean fullSnapshots, String topic, int fullEvery, Duration fullInterval) {
+}
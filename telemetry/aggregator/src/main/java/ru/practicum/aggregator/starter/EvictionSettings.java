@@ -0,0 +1,12 @@
+package ru.practicum.aggregator.starter;
+
+import java.time.Duration;
+
+/**
+ * Настройки вытеснения состояния хабов. Нулевые {@code hubTtl}, {@code sensorTtl} и
+ * {@code maxSensors} отключают соответствующее правило. {@code maxSensors} проверяется только
+ * при вытеснении раз в {@code interval}, а не при добавлении датчика.
+ */
+record EvictionSettings(Duration interval, Duration hubTtl, Duration sensorTtl, int maxSensors,
+                        boolean deviceRemovedEvents) {
+}
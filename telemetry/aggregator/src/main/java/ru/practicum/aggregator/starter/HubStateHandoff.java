@@ -0,0 +1,50 @@
+package ru.practicum.aggregator.starter;
+
+import org.apache.kafka.common.TopicPartition;
+import ru.yandex.practicum.kafka.telemetry.event.SensorsSnapshotAvro;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Передача состояния хабов между потоками агрегатора при перебалансировке.
+ * Поток, у которого отозвали партицию, оставляет здесь снапшоты её хабов вместе со
+ * смещением, которое он зафиксировал. Поток, получивший партицию, забирает их, только
+ * если зафиксированное в группе смещение совпадает: иначе партицию успел обработать
+ * кто-то другой, и сохранённое состояние устарело.
+ * Если партиция ушла на другой экземпляр, забирать её состояние некому: такие записи
+ * удаляются по истечении {@code ttl} при следующем обращении к передаче.
+ */
+class HubStateHandoff {
+    private final Map<TopicPartition, Entry> entries = new ConcurrentHashMap<>();
+    private final long ttlNanos;
+
+    HubStateHandoff(Duration ttl) {
+        this.ttlNanos = ttl.toNanos();
+    }
+
+    void put(TopicPartition partition, long committedOffset, Map<String, SensorsSnapshotAvro> hubs) {
+        long now = System.nanoTime();
+        expire(now);
+        entries.put(partition, new Entry(committedOffset, hubs, now));
+    }
+
+    Optional<Map<String, SensorsSnapshotAvro>> take(TopicPartition partition, long committedOffset) {
+        long now = System.nanoTime();
+        expire(now);
+        Entry entry = entries.remove(partition);
+        if (entry == null || entry.committedOffset() != committedOffset) {
+            return Optional.empty();
+        }
+        return Optional.of(entry.hubs());
+    }
+
+    private void expire(long now) {
+        entries.values().removeIf(entry -> now - entry.handedOffAt() > ttlNanos);
+    }
+
+    private record Entry(long committedOffset, Map<String, SensorsSnapshotAvro> hubs, long handedOffAt) {
+    }
+}
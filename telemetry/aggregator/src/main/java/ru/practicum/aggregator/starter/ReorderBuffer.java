@@ -0,0 +1,219 @@
+package ru.practicum.aggregator.starter;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.kafka.common.TopicPartition;
+
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+/**
+ * Буфер переупорядочивания событий датчиков по времени события. У каждого хаба свой
+ * водяной знак: максимальная увиденная метка времени минус {@code allowed-lateness}.
+ * Метки времени для водяного знака ограничены текущим временем плюс {@code max-clock-skew},
+ * чтобы датчик с убежавшими вперёд часами не объявил опоздавшими события остальных датчиков хаба.
+ * События не новее водяного знака передаются дальше в порядке меток времени, а события
+ * старше уже пройденного водяного знака отбрасываются как опоздавшие.
+ * <p>
+ * Память ограничена {@code max-events-per-hub}: при переполнении самое раннее событие
+ * хаба передаётся досрочно. Событие, ждущее дольше {@code max-hold} по времени обработки,
+ * тоже передаётся досрочно вместе с более ранними по времени события, чтобы затихший хаб
+ * не держал показания; водяной знак при этом не уходит дальше оставшихся в буфере событий.
+ * Буфер помнит смещения неприменённых событий, чтобы коммит их не обгонял.
+ */
+class ReorderBuffer {
+    private static final Comparator<Held> EVENT_TIME_ORDER = Comparator
+            .comparingLong((Held held) -> held.event.timestamp())
+            .thenComparingLong(held -> held.event.sequence());
+
+    private final Sink sink;
+    private final boolean enabled;
+    private final long latenessMillis;
+    private final int maxEventsPerHub;
+    private final long maxHoldNanos;
+    private final long maxClockSkewMillis;
+    private final Map<String, HubBuffer> hubs = new HashMap<>();
+    private final Map<TopicPartition, TreeMap<Long, Integer>> bufferedOffsets = new HashMap<>();
+    private final AtomicInteger buffered = new AtomicInteger();
+    private final Counter lateDropped;
+    private final Counter reordered;
+    private final Counter forced;
+    private long sequence;
+
+    ReorderBuffer(Sink sink, ReorderSettings settings, String worker, MeterRegistry meterRegistry) {
+        this.sink = sink;
+        this.enabled = settings.enabled();
+        this.latenessMillis = settings.allowedLateness().toMillis();
+        this.maxEventsPerHub = settings.maxEventsPerHub();
+        this.maxHoldNanos = settings.maxHold().toNanos();
+        this.maxClockSkewMillis = settings.maxClockSkew().toMillis();
+        this.lateDropped = meterRegistry.counter("aggregator.reorder.late-dropped");
+        this.reordered = meterRegistry.counter("aggregator.reorder.reordered");
+        this.forced = meterRegistry.counter("aggregator.reorder.forced");
+        Gauge.builder("aggregator.reorder.buffered", buffered, AtomicInteger::get)
+                .tag("worker", worker)
+                .register(meterRegistry);
+    }
+
+    void add(Object event, String hubId, long timestamp, TopicPartition partition, long offset) {
+        if (!enabled) {
+            sink.apply(event, partition, offset);
+            return;
+        }
+        BufferedEvent entry = new BufferedEvent(event, hubId, timestamp, partition, offset, sequence++);
+        HubBuffer hub = hubs.computeIfAbsent(hubId, id -> new HubBuffer());
+        if (timestamp < hub.watermark) {
+            lateDropped.increment();
+            return;
+        }
+        if (timestamp < hub.maxTimestamp) {
+            reordered.increment();
+        }
+        Held held = new Held(entry, System.nanoTime());
+        hub.events.add(held);
+        hub.arrivals.add(held);
+        track(partition, offset, 1);
+        buffered.incrementAndGet();
+        hub.maxTimestamp = Math.max(hub.maxTimestamp, bounded(timestamp));
+        release(hub, hub.maxTimestamp - latenessMillis);
+        while (hub.events.size() > maxEventsPerHub) {
+            forced.increment();
+            releaseHead(hub);
+        }
+    }
+
+    /**
+     * Передаёт дальше события, ждущие дольше {@code max-hold}, и все более ранние по времени
+     * события их хабов. Более поздние события остаются в буфере.
+     */
+    void flushDue() {
+        if (hubs.isEmpty()) {
+            return;
+        }
+        long now = System.nanoTime();
+        for (HubBuffer hub : hubs.values()) {
+            hub.dropReleasedArrivals();
+            long upTo = Long.MIN_VALUE;
+            for (Held held : hub.arrivals) {
+                if (now - held.bufferedNanos < maxHoldNanos) {
+                    break;
+                }
+                if (!held.released) {
+                    upTo = Math.max(upTo, held.event.timestamp());
+                }
+            }
+            if (upTo != Long.MIN_VALUE) {
+                release(hub, upTo);
+                hub.dropReleasedArrivals();
+            }
+        }
+    }
+
+    /**
+     * Передаёт дальше все буферизованные события подходящих хабов, например перед
+     * отзывом партиции или остановкой.
+     */
+    void flush(Predicate<String> hubIds) {
+        for (Map.Entry<String, HubBuffer> entry : hubs.entrySet()) {
+            if (hubIds.test(entry.getKey())) {
+                release(entry.getValue(), entry.getValue().maxTimestamp);
+            }
+        }
+    }
+
+    /**
+     * Забывает хабы вместе с неприменёнными событиями: после отката они будут прочитаны заново.
+     */
+    void discard(Predicate<String> hubIds) {
+        for (Iterator<Map.Entry<String, HubBuffer>> it = hubs.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<String, HubBuffer> entry = it.next();
+            if (hubIds.test(entry.getKey())) {
+                for (Held held : entry.getValue().events) {
+                    track(held.event.partition(), held.event.offset(), -1);
+                }
+                buffered.addAndGet(-entry.getValue().events.size());
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Наименьшее смещение партиции, событие которого ещё лежит в буфере.
+     */
+    OptionalLong minBufferedOffset(TopicPartition partition) {
+        TreeMap<Long, Integer> offsets = bufferedOffsets.get(partition);
+        return offsets == null || offsets.isEmpty() ? OptionalLong.empty() : OptionalLong.of(offsets.firstKey());
+    }
+
+    private void release(HubBuffer hub, long upTo) {
+        while (!hub.events.isEmpty() && hub.events.peek().event.timestamp() <= upTo) {
+            releaseHead(hub);
+        }
+        hub.watermark = Math.max(hub.watermark, bounded(upTo));
+    }
+
+    private void releaseHead(HubBuffer hub) {
+        Held held = hub.events.poll();
+        held.released = true;
+        BufferedEvent event = held.event;
+        hub.watermark = Math.max(hub.watermark, bounded(event.timestamp()));
+        track(event.partition(), event.offset(), -1);
+        buffered.decrementAndGet();
+        sink.apply(event.event(), event.partition(), event.offset());
+    }
+
+    private long bounded(long timestamp) {
+        return Math.min(timestamp, System.currentTimeMillis() + maxClockSkewMillis);
+    }
+
+    private void track(TopicPartition partition, long offset, int delta) {
+        TreeMap<Long, Integer> offsets = bufferedOffsets.computeIfAbsent(partition, p -> new TreeMap<>());
+        offsets.merge(offset, delta, (current, change) -> current + change == 0 ? null : current + change);
+    }
+
+    private record BufferedEvent(Object event, String hubId, long timestamp, TopicPartition partition, long offset,
+                                 long sequence) {
+    }
+
+    @FunctionalInterface
+    interface Sink {
+        void apply(Object event, TopicPartition partition, long offset);
+    }
+
+    /**
+     * Событие в буфере вместе с моментом постановки; {@code released} отмечает уже
+     * переданные события, которые ещё лежат в очереди поступления.
+     */
+    private static final class Held {
+        private final BufferedEvent event;
+        private final long bufferedNanos;
+        private boolean released;
+
+        private Held(BufferedEvent event, long bufferedNanos) {
+            this.event = event;
+            this.bufferedNanos = bufferedNanos;
+        }
+    }
+
+    private static final class HubBuffer {
+        private final PriorityQueue<Held> events = new PriorityQueue<>(EVENT_TIME_ORDER);
+        private final ArrayDeque<Held> arrivals = new ArrayDeque<>();
+        private long maxTimestamp = Long.MIN_VALUE;
+        private long watermark = Long.MIN_VALUE;
+
+        private void dropReleasedArrivals() {
+            while (!arrivals.isEmpty() && arrivals.peekFirst().released) {
+                arrivals.pollFirst();
+            }
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package ru.practicum.aggregator.starter;
+
+import java.time.Duration;
+
+/**
+ * Настройки буфера переупорядочивания, см. {@link ReorderBuffer}.
+ */
+record ReorderSettings(boolean enabled, Duration allowedLateness, int maxEventsPerHub, Duration maxHold,
+                       Duration maxClockSkew) {
+}
@@ -0,0 +1,179 @@
+package ru.practicum.aggregator.starter;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.kafka.common.TopicPartition;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+
+/**
+ * Копит изменения снапшотов хабов одного потока и отправляет не больше одного снапшота
+ * на хаб за пачку poll и за {@code interval}. Изменение не ждёт дольше {@code max-delay}:
+ * хаб, у которого первое неотправленное изменение старше этого срока, отправляется сразу.
+ * Снапшот собирается в момент отправки, поэтому уходит последнее состояние хаба.
+ * Коалесцер помнит смещения записей с неотправленными изменениями, чтобы коммит их не обгонял.
+ */
+class SnapshotCoalescer {
+    private final Emitter emitter;
+    private final boolean enabled;
+    private final long intervalNanos;
+    private final long maxDelayNanos;
+    private final Map<String, HubEmission> hubs = new HashMap<>();
+    private final Map<TopicPartition, TreeMap<Long, Integer>> pendingOffsets = new HashMap<>();
+    private final Counter changes;
+    private final Counter emitted;
+
+    SnapshotCoalescer(Emitter emitter, boolean enabled, Duration interval, Duration maxDelay,
+                      MeterRegistry meterRegistry) {
+        this.emitter = emitter;
+        this.enabled = enabled;
+        this.intervalNanos = interval.toNanos();
+        this.maxDelayNanos = maxDelay.toNanos();
+        this.changes = meterRegistry.counter("aggregator.snapshot.changes");
+        this.emitted = meterRegistry.counter("aggregator.snapshots.emitted");
+    }
+
+    /**
+     * Изменение, не связанное с прочитанной записью, например после вытеснения датчиков.
+     */
+    void changed(TopicPartition partition, String hubId, long eventTimestamp) {
+        changed(partition, hubId, eventTimestamp, null, -1);
+    }
+
+    /**
+     * Изменение хаба из записи {@code sourceOffset} партиции {@code source}: пока снапшот
+     * не отправлен, коммит этой партиции не уходит дальше этой записи.
+     */
+    void changed(TopicPartition partition, String hubId, long eventTimestamp, TopicPartition source,
+                 long sourceOffset) {
+        changes.increment();
+        if (!enabled) {
+            emit(hubId, eventTimestamp);
+            return;
+        }
+        HubEmission hub = hubs.computeIfAbsent(hubId, HubEmission::new);
+        if (!hub.pending) {
+            hub.pending = true;
+            hub.firstChangeNanos = System.nanoTime();
+        }
+        hub.partition = partition;
+        hub.eventTimestamp = eventTimestamp;
+        if (source != null && hub.sources.putIfAbsent(source, sourceOffset) == null) {
+            track(source, sourceOffset, 1);
+        }
+    }
+
+    /**
+     * Наименьшее смещение партиции, изменение из которого ещё не отправлено.
+     */
+    OptionalLong minPendingOffset(TopicPartition partition) {
+        TreeMap<Long, Integer> offsets = pendingOffsets.get(partition);
+        return offsets == null || offsets.isEmpty() ? OptionalLong.empty() : OptionalLong.of(offsets.firstKey());
+    }
+
+    /**
+     * Отправляет хабы, для которых истёк интервал с прошлой отправки или срок ожидания изменения.
+     */
+    void flushDue() {
+        long now = System.nanoTime();
+        for (HubEmission hub : hubs.values()) {
+            if (hub.pending && (!hub.emittedBefore
+                    || now - hub.lastEmittedNanos >= intervalNanos
+                    || now - hub.firstChangeNanos >= maxDelayNanos)) {
+                emit(hub, now);
+            }
+        }
+    }
+
+    /**
+     * Отправляет все накопленные изменения партиций, например перед контрольной точкой или отзывом.
+     */
+    void flush(Predicate<TopicPartition> partitions) {
+        long now = System.nanoTime();
+        for (HubEmission hub : hubs.values()) {
+            if (hub.pending && partitions.test(hub.partition)) {
+                emit(hub, now);
+            }
+        }
+    }
+
+    /**
+     * Забывает хабы, состояние которых ушло из потока. Неотправленные изменения нужно сбросить заранее.
+     */
+    void forget(Predicate<String> hubIds) {
+        for (Iterator<HubEmission> it = hubs.values().iterator(); it.hasNext(); ) {
+            HubEmission hub = it.next();
+            if (hubIds.test(hub.hubId)) {
+                release(hub);
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Сколько можно ждать в poll, не нарушив {@code max-delay} накопленных изменений.
+     */
+    Duration pollTimeout(Duration max) {
+        long now = System.nanoTime();
+        long timeout = max.toNanos();
+        for (Iterator<HubEmission> it = hubs.values().iterator(); it.hasNext() && timeout > 0; ) {
+            HubEmission hub = it.next();
+            if (hub.pending) {
+                long due = hub.emittedBefore
+                        ? Math.min(hub.lastEmittedNanos + intervalNanos, hub.firstChangeNanos + maxDelayNanos)
+                        : now;
+                timeout = Math.min(timeout, due - now);
+            }
+        }
+        return Duration.ofNanos(Math.max(timeout, 0));
+    }
+
+    private void emit(HubEmission hub, long now) {
+        emit(hub.hubId, hub.eventTimestamp);
+        release(hub);
+        hub.pending = false;
+        hub.lastEmittedNanos = now;
+        hub.emittedBefore = true;
+    }
+
+    private void emit(String hubId, long eventTimestamp) {
+        emitter.emit(hubId, eventTimestamp);
+        emitted.increment();
+    }
+
+    private void release(HubEmission hub) {
+        hub.sources.forEach((source, offset) -> track(source, offset, -1));
+        hub.sources.clear();
+    }
+
+    private void track(TopicPartition partition, long offset, int delta) {
+        TreeMap<Long, Integer> offsets = pendingOffsets.computeIfAbsent(partition, p -> new TreeMap<>());
+        offsets.merge(offset, delta, (current, change) -> current + change == 0 ? null : current + change);
+    }
+
+    @FunctionalInterface
+    interface Emitter {
+        void emit(String hubId, long eventTimestamp);
+    }
+
+    private static final class HubEmission {
+        private final String hubId;
+        private final Map<TopicPartition, Long> sources = new HashMap<>(2);
+        private TopicPartition partition;
+        private boolean pending;
+        private long eventTimestamp;
+        private long firstChangeNanos;
+        private long lastEmittedNanos;
+        private boolean emittedBefore;
+
+        private HubEmission(String hubId) {
+            this.hubId = hubId;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package ru.practicum.aggregator.starter;
+
+import ru.yandex.practicum.kafka.telemetry.event.SensorStateAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SensorsSnapshotAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SensorsSnapshotDeltaAvro;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Копит изменённые и удалённые датчики хабов одного потока между отправками и собирает
+ * из них {@link SensorsSnapshotDeltaAvro}. Первая отправка хаба в потоке, каждая
+ * {@code fullEvery}-я и первая после {@code fullInterval} — полный снимок: по нему
+ * получатель восстанавливает состояние после пропуска номера или перезапуска.
+ */
+class SnapshotDeltaTracker {
+    private final int fullEvery;
+    private final long fullIntervalMillis;
+    private final Map<String, HubDelta> hubs = new HashMap<>();
+
+    SnapshotDeltaTracker(int fullEvery, Duration fullInterval) {
+        this.fullEvery = fullEvery;
+        this.fullIntervalMillis = fullInterval.toMillis();
+    }
+
+    void changed(String hubId, String sensorId) {
+        HubDelta hub = hubs.get(hubId);
+        if (hub != null) {
+            hub.removed.remove(sensorId);
+            hub.changed.add(sensorId);
+        }
+    }
+
+    void removed(String hubId, String sensorId) {
+        HubDelta hub = hubs.get(hubId);
+        if (hub != null) {
+            hub.changed.remove(sensorId);
+            hub.removed.add(sensorId);
+        }
+    }
+
+    /**
+     * Следующая отправка хаба будет полным снимком, например после вытеснения датчиков,
+     * про которые известно только, что хаб изменился.
+     */
+    void reset(String hubId) {
+        HubDelta hub = hubs.get(hubId);
+        if (hub != null) {
+            hub.needsFull = true;
+        }
+    }
+
+    void forget(Predicate<String> hubIds) {
+        hubs.keySet().removeIf(hubIds);
+    }
+
+    SensorsSnapshotDeltaAvro delta(SensorsSnapshotAvro snapshot, long now) {
+        HubDelta hub = hubs.computeIfAbsent(snapshot.getHubId(), id -> new HubDelta());
+        boolean full = hub.needsFull || hub.sinceFull >= fullEvery || now - hub.lastFullMillis >= fullIntervalMillis;
+        Map<String, SensorStateAvro> changed;
+        if (full) {
+            changed = snapshot.getSensorsState();
+            hub.sinceFull = 0;
+            hub.lastFullMillis = now;
+            hub.needsFull = false;
+        } else {
+            changed = new HashMap<>();
+            for (String sensorId : hub.changed) {
+                SensorStateAvro state = snapshot.getSensorsState().get(sensorId);
+                if (state != null) {
+                    changed.put(sensorId, state);
+                }
+            }
+            hub.sinceFull++;
+        }
+        SensorsSnapshotDeltaAvro delta = SensorsSnapshotDeltaAvro.newBuilder()
+                .setHubId(snapshot.getHubId())
+                .setTimestamp(snapshot.getTimestamp())
+                .setSequence(++hub.sequence)
+                .setFull(full)
+                .setChanged(changed)
+                .setRemoved(full ? new ArrayList<>() : new ArrayList<>(hub.removed))
+                .build();
+        hub.changed.clear();
+        hub.removed.clear();
+        return delta;
+    }
+
+    private static final class HubDelta {
+        private final Set<String> changed = new HashSet<>();
+        private final Set<String> removed = new HashSet<>();
+        private long sequence;
+        private int sinceFull;
+        private long lastFullMillis;
+        private boolean needsFull = true;
+    }
+}
@@ -0,0 +1,93 @@
+package ru.practicum.aggregator.state;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.avro.specific.SpecificRecordBase;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.kafka.telemetry.event.SensorsSnapshotAvro;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Восстанавливает состояние хабов партиции из компактного топика-журнала, куда агрегатор
+ * дублирует каждый отправленный снапшот с ключом hub_id. Журнал партиционирован так же,
+ * как топик событий датчиков, поэтому партиция журнала содержит ровно хабы входной партиции.
+ * Пустое значение в журнале означает, что состояние хаба удалено.
+ * Чтение журнала идёт внутри обработчика перебалансировки, поэтому ограничено
+ * {@code changelog-restore-timeout}: если журнал не дочитан к этому сроку, восстанавливается
+ * прочитанная часть, а остальные хабы соберутся заново из новых событий.
+ */
+@Slf4j
+@Component
+public class ChangelogRestorer {
+    private static final Duration POLL_TIMEOUT = Duration.ofMillis(500);
+
+    private final String changelogTopic;
+    private final Duration restoreTimeout;
+
+    public ChangelogRestorer(@Value("${aggregator.state.changelog-topic:}") String changelogTopic,
+                             @Value("${aggregator.state.changelog-restore-timeout:30s}") Duration restoreTimeout) {
+        this.changelogTopic = changelogTopic;
+        this.restoreTimeout = restoreTimeout;
+    }
+
+    public boolean isEnabled() {
+        return !changelogTopic.isBlank();
+    }
+
+    public String topic() {
+        return changelogTopic;
+    }
+
+    public Map<String, SensorsSnapshotAvro> restore(int partition) {
+        Map<String, SensorsSnapshotAvro> hubs = new HashMap<>();
+        if (!isEnabled()) {
+            return hubs;
+        }
+        TopicPartition changelogPartition = new TopicPartition(changelogTopic, partition);
+        try (KafkaConsumer<String, SpecificRecordBase> consumer = new KafkaConsumer<>(consumerProperties())) {
+            consumer.assign(List.of(changelogPartition));
+            consumer.seekToBeginning(List.of(changelogPartition));
+            long end = consumer.endOffsets(List.of(changelogPartition)).get(changelogPartition);
+            long deadline = System.nanoTime() + restoreTimeout.toNanos();
+            while (consumer.position(changelogPartition) < end) {
+                if (System.nanoTime() - deadline >= 0) {
+                    log.warn("Restore of {} timed out after {} at offset {} of {}, continuing with {} hubs",
+                            changelogPartition, restoreTimeout, consumer.position(changelogPartition), end,
+                            hubs.size());
+                    return hubs;
+                }
+                for (ConsumerRecord<String, SpecificRecordBase> record : consumer.poll(POLL_TIMEOUT)) {
+                    if (record.value() == null) {
+                        hubs.remove(record.key());
+                    } else {
+                        hubs.put(record.key(), (SensorsSnapshotAvro) record.value());
+                    }
+                }
+            }
+        }
+        log.info("Restored state of {} hubs from {}", hubs.size(), changelogPartition);
+        return hubs;
+    }
+
+    private Properties consumerProperties() {
+        Properties config = new Properties();
+        config.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, "localhost:9092");
+        config.put(ConsumerConfig.CLIENT_ID_CONFIG, "aggregator-changelog-restore");
+        config.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG,
+                "org.apache.kafka.common.serialization.StringDeserializer");
+        config.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG,
+                "kafka.deserializer.SnapshotDeserializer");
+        config.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "false");
+        config.put(ConsumerConfig.ISOLATION_LEVEL_CONFIG, "read_committed");
+        return config;
+    }
+}
@@ -0,0 +1,204 @@
+package ru.practicum.aggregator.state;
+
+import kafka.deserializer.SnapshotDeserializer;
+import kafka.serializer.GeneralAvroSerializer;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.kafka.telemetry.event.SensorsSnapshotAvro;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+/**
+ * Контрольные точки состояния хабов на локальном диске, по файлу на партицию.
+ * Файл отображается в память, записывается целиком во временный файл и атомарно
+ * подменяет предыдущий, поэтому после сбоя на диске всегда лежит последняя полная
+ * контрольная точка.
+ * <p>
+ * Формат: {@code [int magic][long offset][int count]}, затем {@code count} пар
+ * {@code [int length][hubId][int length][SensorsSnapshotAvro]} и CRC32 всего
+ * предыдущего содержимого. {@code offset} — смещение во входном топике, с которого
+ * нужно продолжить чтение после восстановления.
+ * <p>
+ * Смещение контрольной точки записывается в метаданные закоммиченного смещения группы
+ * вместе с идентификатором экземпляра ({@link #token(long)}), так что при назначении
+ * партиции можно проверить, что её после этой контрольной точки никто не обрабатывал.
+ * <p>
+ * Это только снимок для восстановления, а не хранилище состояния вне кучи: рабочее
+ * состояние хабов по-прежнему живёт в куче агрегатора, а при сохранении ещё и
+ * сериализуется в кучу целиком перед записью. Файл отображается одним буфером, поэтому
+ * контрольная точка партиции ограничена 2 ГБ: более крупная не записывается, коммит
+ * уходит без ссылки на неё, и при назначении партиции состояние восстанавливается из журнала.
+ */
+@Slf4j
+@Component
+public class PartitionCheckpointStore {
+    private static final int MAGIC = 0x41475331;
+    private static final String INSTANCE_FILE = "instance.id";
+
+    private final Path directory;
+    private final String instanceId;
+    private final GeneralAvroSerializer serializer = new GeneralAvroSerializer();
+    private final SnapshotDeserializer deserializer = new SnapshotDeserializer();
+
+    public PartitionCheckpointStore(@Value("${aggregator.state.checkpoint-dir:}") String checkpointDir) {
+        if (checkpointDir.isBlank()) {
+            this.directory = null;
+            this.instanceId = null;
+            return;
+        }
+        try {
+            this.directory = Files.createDirectories(Path.of(checkpointDir));
+            this.instanceId = loadInstanceId(directory.resolve(INSTANCE_FILE));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open checkpoint directory " + checkpointDir, e);
+        }
+        log.info("Hub state checkpoints in {}, instance {}", directory, instanceId);
+    }
+
+    public boolean isEnabled() {
+        return directory != null;
+    }
+
+    /**
+     * Метаданные коммита, ссылающиеся на контрольную точку этого экземпляра со смещением {@code offset}.
+     */
+    public String token(long offset) {
+        return instanceId + ":" + offset;
+    }
+
+    /**
+     * Загружает контрольную точку партиции, если метаданные закоммиченного смещения указывают именно на неё.
+     */
+    public Optional<Checkpoint> load(TopicPartition partition, String committedMetadata) {
+        if (!isEnabled() || committedMetadata == null || !committedMetadata.startsWith(instanceId + ":")) {
+            return Optional.empty();
+        }
+        Path file = fileFor(partition);
+        if (!Files.exists(file)) {
+            return Optional.empty();
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            Checkpoint checkpoint = decode(partition, buffer);
+            if (checkpoint == null || !committedMetadata.equals(token(checkpoint.offset()))) {
+                log.warn("Checkpoint of {} is corrupted or does not match committed offset metadata {}",
+                        partition, committedMetadata);
+                return Optional.empty();
+            }
+            return Optional.of(checkpoint);
+        } catch (IOException e) {
+            log.warn("Cannot read checkpoint of {}", partition, e);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Сохраняет контрольную точку партиции; {@code false}, если она не помещается в один файл.
+     */
+    public boolean save(TopicPartition partition, long offset, Map<String, SensorsSnapshotAvro> hubs) {
+        if (!isEnabled()) {
+            return false;
+        }
+        List<byte[]> keys = new ArrayList<>(hubs.size());
+        List<byte[]> values = new ArrayList<>(hubs.size());
+        long size = Integer.BYTES + Long.BYTES + Integer.BYTES + Long.BYTES;
+        for (Map.Entry<String, SensorsSnapshotAvro> entry : hubs.entrySet()) {
+            byte[] key = entry.getKey().getBytes(StandardCharsets.UTF_8);
+            byte[] value = serializer.serialize(partition.topic(), entry.getValue());
+            keys.add(key);
+            values.add(value);
+            size += 2L * Integer.BYTES + key.length + value.length;
+        }
+
+        if (size > Integer.MAX_VALUE) {
+            log.warn("Checkpoint of {} takes {} bytes, over the single file limit, not saved", partition, size);
+            return false;
+        }
+
+        Path file = fileFor(partition);
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+                buffer.putInt(MAGIC);
+                buffer.putLong(offset);
+                buffer.putInt(keys.size());
+                for (int i = 0; i < keys.size(); i++) {
+                    buffer.putInt(keys.get(i).length);
+                    buffer.put(keys.get(i));
+                    buffer.putInt(values.get(i).length);
+                    buffer.put(values.get(i));
+                }
+                buffer.putLong(checksum(buffer, buffer.position()));
+                buffer.force();
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write checkpoint of " + partition, e);
+        }
+        return true;
+    }
+
+    private Checkpoint decode(TopicPartition partition, MappedByteBuffer buffer) {
+        if (buffer.limit() < Integer.BYTES + Long.BYTES + Integer.BYTES + Long.BYTES
+                || buffer.getInt(0) != MAGIC) {
+            return null;
+        }
+        int checksumPosition = buffer.limit() - Long.BYTES;
+        if (buffer.getLong(checksumPosition) != checksum(buffer, checksumPosition)) {
+            return null;
+        }
+        buffer.position(Integer.BYTES);
+        long offset = buffer.getLong();
+        int count = buffer.getInt();
+        Map<String, SensorsSnapshotAvro> hubs = new HashMap<>(count * 2);
+        for (int i = 0; i < count; i++) {
+            byte[] key = new byte[buffer.getInt()];
+            buffer.get(key);
+            byte[] value = new byte[buffer.getInt()];
+            buffer.get(value);
+            hubs.put(new String(key, StandardCharsets.UTF_8), deserializer.deserialize(partition.topic(), value));
+        }
+        return new Checkpoint(offset, hubs);
+    }
+
+    private Path fileFor(TopicPartition partition) {
+        return directory.resolve(partition.topic() + "-" + partition.partition() + ".ckpt");
+    }
+
+    private static long checksum(MappedByteBuffer buffer, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(buffer.slice(0, length));
+        return crc.getValue();
+    }
+
+    private static String loadInstanceId(Path file) throws IOException {
+        if (Files.exists(file)) {
+            return Files.readString(file).trim();
+        }
+        String id = UUID.randomUUID().toString();
+        Files.writeString(file, id);
+        return id;
+    }
+
+    public record Checkpoint(long offset, Map<String, SensorsSnapshotAvro> hubs) {
+    }
+}
@@ -0,0 +1,173 @@
+package ru.practicum.aggregator.starter;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import kafka.partitioner.HubIdPartitioner;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.clients.producer.Callback;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.jupiter.api.Test;
+import ru.practicum.aggregator.config.SnapshotValueSerializer;
+import ru.practicum.aggregator.handler.SensorEventHandler;
+import ru.practicum.aggregator.state.ChangelogRestorer;
+import ru.practicum.aggregator.state.PartitionCheckpointStore;
+import ru.yandex.practicum.kafka.telemetry.event.SensorEventAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SensorsSnapshotAvro;
+import ru.yandex.practicum.kafka.telemetry.event.TemperatureSensorAvro;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Порядок событий хаба при передаче его партиции от одного потока агрегатора другому:
+ * отзыв фиксирует смещение и передаёт состояние через {@link HubStateHandoff}, а новый
+ * владелец продолжает с этого смещения поверх переданного состояния.
+ */
+class AggregatorWorkerRebalanceTest {
+    private static final String SENSORS_TOPIC = "telemetry.sensors.v1";
+    private static final String SNAPSHOTS_TOPIC = "telemetry.snapshots.v1";
+    private static final String HUB_ID = "hub-1";
+    private static final int PARTITIONS = 2;
+
+    private final HubStateHandoff handoff = new HubStateHandoff(Duration.ofMinutes(5));
+    private final Map<TopicPartition, OffsetAndMetadata> groupOffsets = new HashMap<>();
+    private final TopicPartition hubPartition =
+            new TopicPartition(SENSORS_TOPIC, HubIdPartitioner.partitionFor(HUB_ID, PARTITIONS));
+    private final TopicPartition otherPartition =
+            new TopicPartition(SENSORS_TOPIC, (hubPartition.partition() + 1) % PARTITIONS);
+
+    @Test
+    void keepsHubOrderAcrossRevokeAndAssign() {
+        GroupConsumer previousConsumer = new GroupConsumer();
+        SnapshotCapturingProducer previousProducer = new SnapshotCapturingProducer();
+        AggregatorWorker previous = worker(previousConsumer, previousProducer, "previous");
+        previousConsumer.schedulePollTask(() -> {
+            previousConsumer.rebalance(List.of(hubPartition, otherPartition));
+            IntStream.range(0, 3).forEach(i -> previousConsumer.addRecord(record(i)));
+        });
+        previousConsumer.schedulePollTask(() -> {
+            previousConsumer.rebalance(List.of(otherPartition));
+            previous.shutdown();
+        });
+        previous.run();
+
+        assertThat(groupOffsets.get(hubPartition).offset()).isEqualTo(3);
+
+        GroupConsumer nextConsumer = new GroupConsumer();
+        SnapshotCapturingProducer nextProducer = new SnapshotCapturingProducer();
+        AggregatorWorker next = worker(nextConsumer, nextProducer, "next");
+        nextConsumer.schedulePollTask(() -> {
+            nextConsumer.rebalance(List.of(hubPartition));
+            // Позицию нового владельца брокер берёт из закоммиченного смещения группы.
+            nextConsumer.seek(hubPartition, groupOffsets.get(hubPartition));
+            IntStream.range(0, 6).forEach(i -> nextConsumer.addRecord(record(i)));
+        });
+        nextConsumer.schedulePollTask(next::shutdown);
+        next.run();
+
+        List<SensorsSnapshotAvro> snapshots = new ArrayList<>(previousProducer.snapshots);
+        List<SensorsSnapshotAvro> taken = nextProducer.snapshots;
+        snapshots.addAll(taken);
+
+        assertThat(taken).hasSize(3);
+        assertThat(snapshots).extracting(SensorsSnapshotAvro::getTimestamp)
+                .containsExactly(1000L, 2000L, 3000L, 4000L, 5000L, 6000L);
+        SensorsSnapshotAvro last = taken.get(taken.size() - 1);
+        assertThat(last.getSensorsState()).containsKeys("t1", "t2");
+        assertThat(last.getSensorsState().get("t1").getTimestamp()).isEqualTo(3000L);
+    }
+
+    /**
+     * Первые три события топика приходят от датчика {@code t1}, следующие — от {@code t2}.
+     */
+    private ConsumerRecord<String, Object> record(int offset) {
+        SensorEventAvro event = SensorEventAvro.newBuilder()
+                .setId(offset < 3 ? "t1" : "t2")
+                .setHubId(HUB_ID)
+                .setTimestamp((offset + 1) * 1000L)
+                .setPayload(TemperatureSensorAvro.newBuilder()
+                        .setTemperatureC(20 + offset)
+                        .setTemperatureF(68 + offset)
+                        .build())
+                .build();
+        return new ConsumerRecord<>(SENSORS_TOPIC, hubPartition.partition(), offset, HUB_ID, event);
+    }
+
+    private AggregatorWorker worker(GroupConsumer consumer, SnapshotCapturingProducer producer,
+                                    String name) {
+        return new AggregatorWorker(consumer, new SensorEventHandler(), producer, false, handoff,
+                new PartitionCheckpointStore(""), new ChangelogRestorer("", Duration.ZERO), SENSORS_TOPIC,
+                "telemetry.hubs.v1", SNAPSHOTS_TOPIC, Duration.ofHours(1),
+                new CoalescingSettings(false, Duration.ZERO, Duration.ofSeconds(1)),
+                new EvictionSettings(Duration.ofHours(1), Duration.ZERO, Duration.ZERO, 0, false),
+                new DeltaSettings(false, true, "telemetry.snapshots.delta.v1", 100, Duration.ofMinutes(1)),
+                new ReorderSettings(false, Duration.ofSeconds(2), 256, Duration.ofSeconds(5), Duration.ofSeconds(1)),
+                name, new SimpleMeterRegistry());
+    }
+
+    /**
+     * Потребитель группы: закоммиченные смещения общие для всех потребителей теста, как на брокере.
+     */
+    private final class GroupConsumer extends MockConsumer<String, Object> {
+        private GroupConsumer() {
+            super(OffsetResetStrategy.EARLIEST);
+            updatePartitions(SENSORS_TOPIC, Stream.of(hubPartition, otherPartition)
+                    .map(partition -> new PartitionInfo(SENSORS_TOPIC, partition.partition(), null, null, null))
+                    .toList());
+            updateBeginningOffsets(Map.of(hubPartition, 0L, otherPartition, 0L));
+        }
+
+        @Override
+        public synchronized void commitSync(Map<TopicPartition, OffsetAndMetadata> offsets) {
+            super.commitSync(offsets);
+            groupOffsets.putAll(offsets);
+        }
+
+        @Override
+        public synchronized Map<TopicPartition, OffsetAndMetadata> committed(Set<TopicPartition> partitions) {
+            Map<TopicPartition, OffsetAndMetadata> committed = new HashMap<>();
+            for (TopicPartition partition : partitions) {
+                OffsetAndMetadata offset = groupOffsets.get(partition);
+                if (offset != null) {
+                    committed.put(partition, offset);
+                }
+            }
+            return committed;
+        }
+    }
+
+    /**
+     * Запоминает копии снапшотов в момент отправки: движок обновляет снапшоты на месте.
+     */
+    private static final class SnapshotCapturingProducer extends MockProducer<String, Object> {
+        private final List<SensorsSnapshotAvro> snapshots = new ArrayList<>();
+
+        private SnapshotCapturingProducer() {
+            super(true, new StringSerializer(), new SnapshotValueSerializer());
+        }
+
+        @Override
+        public synchronized Future<RecordMetadata> send(ProducerRecord<String, Object> record, Callback callback) {
+            if (record.topic().equals(SNAPSHOTS_TOPIC)) {
+                snapshots.add(SensorsSnapshotAvro.newBuilder((SensorsSnapshotAvro) record.value()).build());
+            }
+            return super.send(record, callback);
+        }
+    }
+}
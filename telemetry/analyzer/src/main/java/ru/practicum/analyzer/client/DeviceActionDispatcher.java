@@ -0,0 +1,178 @@
+package ru.practicum.analyzer.client;
+
+import com.google.protobuf.Empty;
+import io.grpc.stub.StreamObserver;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import net.devh.boot.grpc.client.inject.GrpcClient;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.grpc.telemetry.event.DeviceActionBatchRequest;
+import ru.yandex.practicum.grpc.telemetry.event.DeviceActionRequest;
+import ru.yandex.practicum.grpc.telemetry.hubrouter.HubRouterControllerGrpc;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Отправляет действия сценариев в hub-router в отдельном потоке, не задерживая обработку снимков.
+ * Действия копятся в ограниченной очереди; поток отправки забирает до {@code max-batch} действий,
+ * подождав не дольше {@code linger}, группирует их по хабам и передаёт одним вызовом
+ * {@code handleDeviceActionStream} — по пакету на хаб. Вызов ограничен {@code deadline},
+ * одновременно открыто не больше {@code max-in-flight} вызовов. Порядок действий хаба
+ * сохраняется внутри вызова; при {@code max-in-flight} больше одного соседние вызовы
+ * могут завершиться в другом порядке. Если очередь заполнена, действие отбрасывается.
+ */
+@Slf4j
+@Component
+public class DeviceActionDispatcher {
+
+    private final HubRouterControllerGrpc.HubRouterControllerStub hubRouterStub;
+    @Getter
+    private final boolean enabled;
+    @Getter
+    private final Duration deadline;
+    private final int maxBatch;
+    private final Duration linger;
+    private final BlockingQueue<DeviceActionRequest> queue;
+    private final Semaphore inFlight;
+    private final int maxInFlight;
+    private final Counter sent;
+    private final Counter failed;
+    private final Counter dropped;
+    private final Thread dispatcher;
+    private volatile boolean running = true;
+
+    public DeviceActionDispatcher(
+            @GrpcClient("hub-router") HubRouterControllerGrpc.HubRouterControllerStub hubRouterStub,
+            @Value("${analyzer.actions.streaming:false}") boolean enabled,
+            @Value("${analyzer.actions.deadline:2s}") Duration deadline,
+            @Value("${analyzer.actions.max-batch:100}") int maxBatch,
+            @Value("${analyzer.actions.linger:10ms}") Duration linger,
+            @Value("${analyzer.actions.max-in-flight:4}") int maxInFlight,
+            @Value("${analyzer.actions.max-queued:10000}") int maxQueued,
+            MeterRegistry meterRegistry) {
+        this.hubRouterStub = hubRouterStub;
+        this.enabled = enabled;
+        this.deadline = deadline;
+        this.maxBatch = maxBatch;
+        this.linger = linger;
+        this.queue = new ArrayBlockingQueue<>(maxQueued);
+        this.maxInFlight = maxInFlight;
+        this.inFlight = new Semaphore(maxInFlight);
+        this.sent = meterRegistry.counter("analyzer.actions.sent");
+        this.failed = meterRegistry.counter("analyzer.actions.failed");
+        this.dropped = meterRegistry.counter("analyzer.actions.dropped");
+        if (enabled) {
+            this.dispatcher = new Thread(this::run, "device-action-dispatcher");
+            this.dispatcher.setDaemon(true);
+            this.dispatcher.start();
+        } else {
+            this.dispatcher = null;
+        }
+    }
+
+    /**
+     * Ставит действие в очередь; {@code false}, если очередь заполнена и действие отброшено.
+     */
+    public boolean submit(DeviceActionRequest request) {
+        if (!queue.offer(request)) {
+            dropped.increment();
+            log.warn("Очередь действий для hub-router заполнена, действие сценария {} хаба {} отброшено",
+                    request.getScenarioName(), request.getHubId());
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Дожидается отправки накопленных действий и завершения открытых вызовов, но не дольше deadline.
+     */
+    @PreDestroy
+    public void close() throws InterruptedException {
+        if (dispatcher == null) {
+            return;
+        }
+        running = false;
+        dispatcher.join(deadline.toMillis());
+        if (inFlight.tryAcquire(maxInFlight, deadline.toMillis(), TimeUnit.MILLISECONDS)) {
+            inFlight.release(maxInFlight);
+        } else {
+            log.warn("Не дождались ответа hub-router на отправленные действия");
+        }
+    }
+
+    private void run() {
+        List<DeviceActionRequest> drained = new ArrayList<>(maxBatch);
+        try {
+            while (running || !queue.isEmpty()) {
+                DeviceActionRequest first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                drained.add(first);
+                long until = System.nanoTime() + linger.toNanos();
+                while (drained.size() < maxBatch) {
+                    DeviceActionRequest next = queue.poll(until - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    drained.add(next);
+                }
+                inFlight.acquire();
+                send(drained);
+                drained = new ArrayList<>(maxBatch);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void send(List<DeviceActionRequest> actions) {
+        Map<String, DeviceActionBatchRequest.Builder> batches = new LinkedHashMap<>();
+        for (DeviceActionRequest action : actions) {
+            batches.computeIfAbsent(action.getHubId(), hubId -> DeviceActionBatchRequest.newBuilder())
+                    .addActions(action);
+        }
+        StreamObserver<DeviceActionBatchRequest> call;
+        try {
+            call = hubRouterStub.withDeadlineAfter(deadline.toMillis(), TimeUnit.MILLISECONDS)
+                    .handleDeviceActionStream(new StreamObserver<>() {
+                        @Override
+                        public void onNext(Empty ignored) {
+                        }
+
+                        @Override
+                        public void onError(Throwable t) {
+                            inFlight.release();
+                            failed.increment(actions.size());
+                            log.warn("Не удалось отправить {} действий в hub-router", actions.size(), t);
+                        }
+
+                        @Override
+                        public void onCompleted() {
+                            inFlight.release();
+                            sent.increment(actions.size());
+                            log.debug("Отправили в hub-router {} действий для {} хабов", actions.size(), batches.size());
+                        }
+                    });
+        } catch (RuntimeException e) {
+            inFlight.release();
+            failed.increment(actions.size());
+            log.warn("Не удалось открыть вызов hub-router для {} действий", actions.size(), e);
+            return;
+        }
+        batches.values().forEach(batch -> call.onNext(batch.build()));
+        call.onCompleted();
+    }
+}
@@ -1,6 +1,9 @@
 package ru.practicum.analyzer.client;
 
 import com.google.protobuf.Timestamp;
+import io.grpc.StatusRuntimeException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 import net.devh.boot.grpc.client.inject.GrpcClient;
 import org.springframework.stereotype.Service;
@@ -12,23 +15,57 @@ import ru.yandex.practicum.grpc.telemetry.hubrouter.HubRouterControllerGrpc;
 import ru.yandex.practicum.kafka.telemetry.event.ActionTypeAvro;
 
 import java.time.Instant;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Отправляет действия сценариев в hub-router. С {@code analyzer.actions.streaming} действие
+ * передаётся в {@link DeviceActionDispatcher} и уходит пакетом асинхронно, иначе —
+ * блокирующим вызовом {@code handleDeviceAction} с тем же ограничением по времени.
+ * Ошибка вызова, в том числе истечение срока, не выходит наружу: она записывается в журнал
+ * и в счётчик {@code analyzer.actions.failed}, чтобы не останавливать обработку снимков.
+ */
 @Slf4j
 @Service
 public class ScenarioActionProducer {
 
     private final HubRouterControllerGrpc.HubRouterControllerBlockingStub hubRouterStub;
+    private final DeviceActionDispatcher dispatcher;
+    private final Counter failed;
 
     public ScenarioActionProducer(
-            @GrpcClient("hub-router") HubRouterControllerGrpc.HubRouterControllerBlockingStub hubRouterStub) {
+            @GrpcClient("hub-router") HubRouterControllerGrpc.HubRouterControllerBlockingStub hubRouterStub,
+            DeviceActionDispatcher dispatcher,
+            MeterRegistry meterRegistry) {
         this.hubRouterStub = hubRouterStub;
+        this.dispatcher = dispatcher;
+        this.failed = meterRegistry.counter("analyzer.actions.failed");
     }
 
-    public void sendAction(ScenarioAction scenarioAction) {
+    /**
+     * Отправляет действие или ставит его в очередь; {@code false}, если действие не ушло в hub-router
+     * и не попало в очередь.
+     */
+    public boolean sendAction(ScenarioAction scenarioAction) {
         DeviceActionRequest actionRequest = mapToActionRequest(scenarioAction);
 
-        hubRouterStub.handleDeviceAction(actionRequest);
+        if (dispatcher.isEnabled()) {
+            if (!dispatcher.submit(actionRequest)) {
+                return false;
+            }
+            log.debug("Действие {} поставлено в очередь hub-router", actionRequest);
+            return true;
+        }
+        try {
+            hubRouterStub.withDeadlineAfter(dispatcher.getDeadline().toMillis(), TimeUnit.MILLISECONDS)
+                    .handleDeviceAction(actionRequest);
+        } catch (StatusRuntimeException e) {
+            failed.increment();
+            log.warn("Не удалось отправить действие сценария {} хаба {} в hub-router: {}",
+                    actionRequest.getScenarioName(), actionRequest.getHubId(), e.getStatus());
+            return false;
+        }
         log.info("Действие {} отправлено в hub-router", actionRequest);
+        return true;
     }
 
     private DeviceActionRequest mapToActionRequest(ScenarioAction scenarioAction) {
@@ -1,6 +1,7 @@
 package ru.practicum.analyzer.config;
 
 import lombok.RequiredArgsConstructor;
+import org.apache.avro.specific.SpecificRecordBase;
 import org.apache.kafka.clients.consumer.Consumer;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
 import org.apache.kafka.clients.consumer.KafkaConsumer;
@@ -8,7 +9,6 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.env.Environment;
 import ru.yandex.practicum.kafka.telemetry.event.HubEventAvro;
-import ru.yandex.practicum.kafka.telemetry.event.SensorsSnapshotAvro;
 
 import java.util.Properties;
 
@@ -28,13 +28,17 @@ public class KafkaConsumerConfiguration {
                 "org.apache.kafka.common.serialization.StringDeserializer");
         config.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG,
                 "kafka.deserializer.HubEventDeserializer");
-        config.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "true");
+        config.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "false");
+        config.put(ConsumerConfig.ISOLATION_LEVEL_CONFIG, "read_committed");
 
         return new KafkaConsumer<>(config);
     }
 
+    /**
+     * Потребитель полных снимков или, с {@code analyzer.snapshots.deltas}, дельт снимков.
+     */
     @Bean
-    public Consumer<String, SensorsSnapshotAvro> getSnapsotConsumer() {
+    public Consumer<String, SpecificRecordBase> getSnapsotConsumer() {
         Properties config = new Properties();
 
         config.put(ConsumerConfig.CLIENT_ID_CONFIG, "analyzer-snapshot-consumer");
@@ -43,8 +47,11 @@ public class KafkaConsumerConfiguration {
         config.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG,
                 "org.apache.kafka.common.serialization.StringDeserializer");
         config.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG,
-                "kafka.deserializer.SnapshotDeserializer");
-        config.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "true");
+                env.getProperty("analyzer.snapshots.deltas", Boolean.class, false)
+                        ? "kafka.deserializer.SnapshotDeltaDeserializer"
+                        : "kafka.deserializer.SnapshotDeserializer");
+        config.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "false");
+        config.put(ConsumerConfig.ISOLATION_LEVEL_CONFIG, "read_committed");
 
         return new KafkaConsumer<>(config);
     }
@@ -5,6 +5,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
 import ru.practicum.analyzer.repository.SensorRepository;
+import ru.practicum.analyzer.scenario.ScenarioCache;
 import ru.yandex.practicum.kafka.telemetry.event.DeviceRemovedEventAvro;
 import ru.yandex.practicum.kafka.telemetry.event.HubEventAvro;
 
@@ -13,6 +14,7 @@ import ru.yandex.practicum.kafka.telemetry.event.HubEventAvro;
 @Slf4j
 public class DeviceRemovedHandler implements HubEventHandler {
     private final SensorRepository repository;
+    private final ScenarioCache scenarioCache;
 
     @Override
     @Transactional
@@ -20,6 +22,7 @@ public class DeviceRemovedHandler implements HubEventHandler {
         DeviceRemovedEventAvro removedEvent = (DeviceRemovedEventAvro) event.getPayload();
         log.info("Удаляем устройство с id = {} из хаба с hub_id = {}", removedEvent.getId(), event.getHubId());
         repository.deleteByIdAndHubId(removedEvent.getId(), event.getHubId());
+        scenarioCache.invalidate(event.getHubId());
     }
 
     @Override
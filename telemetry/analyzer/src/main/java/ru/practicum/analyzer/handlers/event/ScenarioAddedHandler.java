@@ -6,6 +6,7 @@ import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
 import ru.practicum.analyzer.model.*;
 import ru.practicum.analyzer.repository.*;
+import ru.practicum.analyzer.scenario.ScenarioCache;
 import ru.yandex.practicum.kafka.telemetry.event.HubEventAvro;
 import ru.yandex.practicum.kafka.telemetry.event.ScenarioAddedEventAvro;
 
@@ -20,6 +21,7 @@ public class ScenarioAddedHandler implements HubEventHandler {
     private final ConditionRepository conditionRepository;
     private final ScenarioActionRepository scenarioActionRepository;
     private final ScenarioConditionRepository scenarioConditionRepository;
+    private final ScenarioCache scenarioCache;
 
     @Override
     @Transactional
@@ -36,6 +38,7 @@ public class ScenarioAddedHandler implements HubEventHandler {
 
         scenarioActionRepository.deleteByScenario(scenario);
         scenarioConditionRepository.deleteByScenario(scenario);
+        scenarioRepository.updateActive(scenario.getId(), false);
 
         scenarioAddedEvent.getConditions().forEach(cDto -> {
             Sensor sensor = sensorRepository.findById(cDto.getSensorId())
@@ -85,6 +88,7 @@ public class ScenarioAddedHandler implements HubEventHandler {
                                     action.getId()))
                             .build());
         });
+        scenarioCache.invalidate(event.getHubId());
 
         log.info("Сценарий '{}' для хаба '{}' обновлён: {} условий, {} действий",
                 scenario.getName(),
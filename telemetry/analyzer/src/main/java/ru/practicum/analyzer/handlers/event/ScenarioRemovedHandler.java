@@ -8,6 +8,7 @@ import ru.practicum.analyzer.model.Scenario;
 import ru.practicum.analyzer.repository.ScenarioActionRepository;
 import ru.practicum.analyzer.repository.ScenarioConditionRepository;
 import ru.practicum.analyzer.repository.ScenarioRepository;
+import ru.practicum.analyzer.scenario.ScenarioCache;
 import ru.yandex.practicum.kafka.telemetry.event.HubEventAvro;
 import ru.yandex.practicum.kafka.telemetry.event.ScenarioRemovedEventAvro;
 
@@ -21,6 +22,7 @@ public class ScenarioRemovedHandler implements HubEventHandler {
     private final ScenarioRepository scenarioRepository;
     private final ScenarioActionRepository scenarioActionRepository;
     private final ScenarioConditionRepository scenarioConditionRepository;
+    private final ScenarioCache scenarioCache;
 
     @Override
     @Transactional
@@ -34,6 +36,7 @@ public class ScenarioRemovedHandler implements HubEventHandler {
             scenarioActionRepository.deleteByScenario(scenario);
             scenarioConditionRepository.deleteByScenario(scenario);
             scenarioRepository.delete(scenario);
+            scenarioCache.invalidate(event.getHubId());
             log.info("Удаляем сценарий с name = {} из хаба с id = {}",
                     scenarioRemovedEvent.getName(),
                     event.getHubId());
@@ -0,0 +1,74 @@
+package ru.practicum.analyzer.handlers.snapshot;
+
+import kafka.partitioner.HubIdPartitioner;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.kafka.telemetry.event.SensorStateAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SensorsSnapshotAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SensorsSnapshotDeltaAvro;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Восстанавливает полные снимки хабов из дельт агрегатора. Дельта применяется только
+ * к снимку с предыдущим номером; после пропуска номера или до первого полного снимка
+ * дельты хаба пропускаются, пока не придёт следующий полный снимок.
+ * Дельты одного хаба должны применяться одним потоком по порядку, разные хабы — параллельно.
+ */
+@Slf4j
+@Component
+public class SnapshotDeltaAssembler {
+    private final Map<String, HubState> hubs = new ConcurrentHashMap<>();
+
+    public Optional<SensorsSnapshotAvro> apply(SensorsSnapshotDeltaAvro delta) {
+        String hubId = delta.getHubId();
+        if (delta.getFull()) {
+            SensorsSnapshotAvro snapshot = SensorsSnapshotAvro.newBuilder()
+                    .setHubId(hubId)
+                    .setTimestamp(delta.getTimestamp())
+                    .setSensorsState(new HashMap<>(delta.getChanged()))
+                    .build();
+            hubs.put(hubId, new HubState(snapshot, delta.getSequence()));
+            return Optional.of(snapshot);
+        }
+        HubState hub = hubs.get(hubId);
+        if (hub == null) {
+            log.debug("Нет полного снимка хаба {}, дельта {} пропущена", hubId, delta.getSequence());
+            return Optional.empty();
+        }
+        if (delta.getSequence() != hub.sequence + 1) {
+            log.warn("Пропуск дельт хаба {}: ожидали {}, получили {}; ждём полный снимок",
+                    hubId, hub.sequence + 1, delta.getSequence());
+            hubs.remove(hubId);
+            return Optional.empty();
+        }
+        Map<String, SensorStateAvro> sensors = hub.snapshot.getSensorsState();
+        sensors.putAll(delta.getChanged());
+        delta.getRemoved().forEach(sensors::remove);
+        hub.snapshot.setTimestamp(delta.getTimestamp());
+        hub.sequence = delta.getSequence();
+        return Optional.of(hub.snapshot);
+    }
+
+    /**
+     * Забывает хабы отозванных партиций: их дельты дальше читает другой потребитель.
+     */
+    public void forget(Collection<Integer> partitions, int partitionCount) {
+        hubs.keySet().removeIf(hubId ->
+                partitions.contains(HubIdPartitioner.partitionFor(hubId, partitionCount)));
+    }
+
+    private static final class HubState {
+        private final SensorsSnapshotAvro snapshot;
+        private long sequence;
+
+        private HubState(SensorsSnapshotAvro snapshot, long sequence) {
+            this.snapshot = snapshot;
+            this.sequence = sequence;
+        }
+    }
+}
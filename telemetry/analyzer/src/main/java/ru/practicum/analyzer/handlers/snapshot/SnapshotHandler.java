@@ -1,67 +1,188 @@
 package ru.practicum.analyzer.handlers.snapshot;
 
+import kafka.partitioner.HubIdPartitioner;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
-import org.springframework.transaction.annotation.Transactional;
 import ru.practicum.analyzer.client.ScenarioActionProducer;
-import ru.practicum.analyzer.model.Condition;
-import ru.practicum.analyzer.model.Scenario;
-import ru.practicum.analyzer.model.ScenarioCondition;
-import ru.practicum.analyzer.repository.ScenarioActionRepository;
-import ru.practicum.analyzer.repository.ScenarioConditionRepository;
+import ru.practicum.analyzer.model.ScenarioAction;
 import ru.practicum.analyzer.repository.ScenarioRepository;
+import ru.practicum.analyzer.scenario.CompiledCondition;
+import ru.practicum.analyzer.scenario.CompiledScenario;
+import ru.practicum.analyzer.scenario.HubScenarios;
+import ru.practicum.analyzer.scenario.ScenarioCache;
 import ru.yandex.practicum.kafka.telemetry.event.*;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Проверяет сценарии хаба по снимку. Сценарии берутся из {@link ScenarioCache},
+ * поэтому проверка снимка не обращается к базе.
+ * <p>
+ * Показания предыдущего снимка хаба хранятся, и проверяются только сценарии с условиями
+ * на изменившиеся датчики. Все сценарии хаба проверяются на первом снимке и после
+ * перезагрузки сценариев в кэше. Поэтому и без {@code edge-triggered} снимок, не изменивший
+ * показаний датчиков сценария, не отправляет его действия повторно, даже если условия
+ * по-прежнему выполняются. Сценарий, действия которого не удалось отправить, проверяется
+ * снова на следующем снимке хаба. Снимки одного хаба должны обрабатываться одним потоком
+ * по порядку, снимки разных хабов — параллельно.
+ * <p>
+ * С {@code analyzer.scenarios.edge-triggered} действия отправляются только при переходе
+ * сценария из невыполненного в выполненный. Признак активации хранится в памяти и
+ * записывается в {@code scenarios.active} только при смене. Сценарий становится активным
+ * только после того, как все его действия отправлены или поставлены в очередь. Выполненный сценарий
+ * сбрасывается, когда его условия не выполняются дольше {@code analyzer.scenarios.rearm-delay}
+ * по времени снимков; более короткий провал не приводит к повторной отправке.
+ */
 @Component
 @RequiredArgsConstructor
 @Slf4j
 public class SnapshotHandler {
 
+    private final ScenarioCache scenarioCache;
     private final ScenarioRepository scenarioRepository;
-    private final ScenarioConditionRepository scenarioConditionRepository;
-    private final ScenarioActionRepository scenarioActionRepository;
     private final ScenarioActionProducer scenarioActionProducer;
+    private final Map<String, HubState> hubs = new ConcurrentHashMap<>();
+
+    @Value("${analyzer.scenarios.edge-triggered:false}")
+    private boolean edgeTriggered;
+    @Value("${analyzer.scenarios.rearm-delay:0s}")
+    private Duration rearmDelay = Duration.ZERO;
 
-    @Transactional(readOnly = true)
     public void handleSnapshot(SensorsSnapshotAvro sensorsSnapshot) {
+        String hubId = sensorsSnapshot.getHubId();
         Map<String, SensorStateAvro> sensorStateMap = sensorsSnapshot.getSensorsState();
-        List<Scenario> scenarios = scenarioRepository.findByHubId(sensorsSnapshot.getHubId());
-
-        scenarios.stream()
-                .filter(scenario -> handleScenario(scenario, sensorStateMap))
-                .forEach(scenario -> {
-                    log.info("Отправка действия для сценария {}", scenario.getName());
-                    sendScenarioActions(scenario);
-                });
+        HubScenarios scenarios = scenarioCache.scenarios(hubId);
+        Map<String, Object> readings = readings(sensorStateMap);
+
+        HubState hub = hubs.get(hubId);
+        Collection<CompiledScenario> affected;
+        if (hub == null || hub.scenarios != scenarios) {
+            hub = new HubState(scenarios);
+            hubs.put(hubId, hub);
+            affected = scenarios.all();
+        } else {
+            affected = scenarios.affectedBy(changedSensors(hub.readings, readings));
+            if (!hub.unsent.isEmpty()) {
+                Set<CompiledScenario> retried = new LinkedHashSet<>(affected);
+                retried.addAll(hub.unsent);
+                affected = retried;
+            }
+        }
+        hub.readings = readings;
+        hub.unsent.clear();
+        log.debug("Хаб {}: проверяем {} из {} сценариев", hubId, affected.size(), scenarios.all().size());
+
+        for (CompiledScenario scenario : affected) {
+            boolean matched = handleScenario(scenario, sensorStateMap);
+            if (!fires(hub, scenario, matched, sensorsSnapshot.getTimestamp())) {
+                continue;
+            }
+            log.info("Отправка действия для сценария {}", scenario.name());
+            if (!sendScenarioActions(scenario)) {
+                log.warn("Не все действия сценария {} хаба {} отправлены", scenario.name(), hubId);
+                hub.unsent.add(scenario);
+            } else if (edgeTriggered) {
+                setActive(scenario, hub.activations.get(scenario.id()), true);
+            }
+        }
+    }
+
+    /**
+     * Забывает хабы отозванных партиций. Их сценарии сбрасываются и из кэша: признаки
+     * активации, загруженные вместе с ними, мог уже изменить другой экземпляр анализатора.
+     */
+    public void forget(Collection<Integer> partitions, int partitionCount) {
+        hubs.keySet().removeIf(hubId -> {
+            if (!partitions.contains(HubIdPartitioner.partitionFor(hubId, partitionCount))) {
+                return false;
+            }
+            scenarioCache.invalidate(hubId);
+            return true;
+        });
+    }
+
+    private boolean fires(HubState hub, CompiledScenario scenario, boolean matched, long timestamp) {
+        if (!edgeTriggered) {
+            return matched;
+        }
+        Activation activation = hub.activations.computeIfAbsent(scenario.id(), id -> new Activation(scenario.active()));
+        if (matched) {
+            boolean rearmed = activation.unmatchedSince >= 0
+                    && timestamp - activation.unmatchedSince >= rearmDelay.toMillis();
+            activation.unmatchedSince = -1;
+            return !activation.active || rearmed;
+        }
+        if (activation.active) {
+            if (activation.unmatchedSince < 0) {
+                activation.unmatchedSince = timestamp;
+            }
+            if (timestamp - activation.unmatchedSince >= rearmDelay.toMillis()) {
+                activation.unmatchedSince = -1;
+                setActive(scenario, activation, false);
+            }
+        }
+        return false;
+    }
+
+    private void setActive(CompiledScenario scenario, Activation activation, boolean active) {
+        if (activation.active != active) {
+            activation.active = active;
+            scenarioRepository.updateActive(scenario.id(), active);
+            log.debug("Сценарий {} {}", scenario.name(), active ? "активирован" : "сброшен");
+        }
+    }
+
+    /**
+     * Снимок из дельт изменяется на месте, поэтому показания копируются без меток времени.
+     */
+    private static Map<String, Object> readings(Map<String, SensorStateAvro> sensorStateMap) {
+        Map<String, Object> readings = new HashMap<>(sensorStateMap.size() * 4 / 3 + 1);
+        sensorStateMap.forEach((sensorId, state) -> readings.put(sensorId, state.getData()));
+        return readings;
+    }
+
+    private static List<String> changedSensors(Map<String, Object> before, Map<String, Object> after) {
+        List<String> changed = new ArrayList<>();
+        after.forEach((sensorId, data) -> {
+            if (!Objects.equals(before.get(sensorId), data)) {
+                changed.add(sensorId);
+            }
+        });
+        before.keySet().stream()
+                .filter(sensorId -> !after.containsKey(sensorId))
+                .forEach(changed::add);
+        return changed;
     }
 
-    private boolean handleScenario(Scenario scenario, Map<String, SensorStateAvro> sensorStateMap) {
-        List<ScenarioCondition> scenarioConditions =
-                scenarioConditionRepository.findByScenario(scenario);
-        log.info("Получили список условий {} у сценария name = {}",
-                scenarioConditions.size(), scenario.getName());
+    private boolean handleScenario(CompiledScenario scenario, Map<String, SensorStateAvro> sensorStateMap) {
+        log.debug("Проверяем {} условий у сценария name = {}",
+                scenario.conditions().size(), scenario.name());
 
         /* если хотя бы одно условие не выполняется – сценарий не подходит */
-        return scenarioConditions.stream()
-                .noneMatch(sc -> !checkCondition(sc.getCondition(),
-                        sc.getSensor().getId(),
-                        sensorStateMap));
+        return scenario.conditions().stream()
+                .noneMatch(condition -> !checkCondition(condition, sensorStateMap));
     }
 
-    private boolean checkCondition(Condition condition,
-                                   String sensorId,
+    private boolean checkCondition(CompiledCondition condition,
                                    Map<String, SensorStateAvro> sensorStateMap) {
 
-        SensorStateAvro sensorState = sensorStateMap.get(sensorId);
+        SensorStateAvro sensorState = sensorStateMap.get(condition.sensorId());
         if (sensorState == null) {
             return false;
         }
 
-        return switch (condition.getType()) {
+        return switch (condition.type()) {
             case LUMINOSITY -> {
                 LightSensorAvro light = (LightSensorAvro) sensorState.getData();
                 yield handleOperation(condition, light.getLuminosity());
@@ -89,18 +210,40 @@ public class SnapshotHandler {
         };
     }
 
-    private boolean handleOperation(Condition condition, Integer currentValue) {
-        Integer targetValue = condition.getValue();
-        return switch (condition.getOperation()) {
-            case EQUALS       -> targetValue.equals(currentValue);
+    private boolean handleOperation(CompiledCondition condition, int currentValue) {
+        int targetValue = condition.value();
+        return switch (condition.operation()) {
+            case EQUALS       -> targetValue == currentValue;
             case LOWER_THAN   -> currentValue < targetValue;
             case GREATER_THAN -> currentValue > targetValue;
         };
     }
 
-    private void sendScenarioActions(Scenario scenario) {
-        scenarioActionRepository.findByScenario(scenario)
-                .forEach(scenarioActionProducer::sendAction);
+    private boolean sendScenarioActions(CompiledScenario scenario) {
+        boolean sent = true;
+        for (ScenarioAction action : scenario.actions()) {
+            sent &= scenarioActionProducer.sendAction(action);
+        }
+        return sent;
+    }
+
+    private static final class HubState {
+        private final HubScenarios scenarios;
+        private final Map<Long, Activation> activations = new HashMap<>();
+        private final List<CompiledScenario> unsent = new ArrayList<>();
+        private Map<String, Object> readings = Map.of();
+
+        private HubState(HubScenarios scenarios) {
+            this.scenarios = scenarios;
+        }
     }
 
+    private static final class Activation {
+        private boolean active;
+        private long unmatchedSince = -1;
+
+        private Activation(boolean active) {
+            this.active = active;
+        }
+    }
 }
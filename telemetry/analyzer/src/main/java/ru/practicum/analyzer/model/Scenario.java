@@ -25,6 +25,9 @@ public class Scenario {
 
     private String name;
 
+    @Column(columnDefinition = "boolean not null default false")
+    private boolean active;
+
     @OneToMany(mappedBy = "scenario", cascade = CascadeType.ALL,
             orphanRemoval = true, fetch = FetchType.LAZY)
     private Set<ScenarioCondition> conditions;
@@ -0,0 +1,158 @@
+package ru.practicum.analyzer.processors;
+
+import kafka.partitioner.HubIdPartitioner;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Обрабатывает записи по полосам. Хаб всегда попадает в одну и ту же полосу (по тому же
+ * murmur2, что и {@link HubIdPartitioner}), поэтому записи хаба выполняются по порядку,
+ * а разные хабы — параллельно. Постановка в полосу не блокирует поток потребителя: когда
+ * в полосах набирается {@code maxPending} необработанных записей, потребитель
+ * приостанавливает занятые партиции и продолжает опрос. Для каждой партиции
+ * отслеживаются незавершённые смещения; к коммиту отдаётся смещение, ниже которого все
+ * записи партиции уже обработаны. После первой ошибки полосы пропускают оставшиеся
+ * записи, а ошибка пробрасывается в поток потребителя при следующей отправке.
+ */
+@Slf4j
+class HubLaneExecutor implements AutoCloseable {
+    private final List<ExecutorService> lanes;
+    private final int maxPending;
+    private final AtomicInteger pending = new AtomicInteger();
+    private final Map<TopicPartition, PartitionProgress> progress = new HashMap<>();
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+    HubLaneExecutor(int laneCount, int maxPending) {
+        this.lanes = new ArrayList<>(laneCount);
+        for (int i = 0; i < laneCount; i++) {
+            String name = "snapshot-lane-" + i;
+            lanes.add(Executors.newSingleThreadExecutor(r -> new Thread(r, name)));
+        }
+        this.maxPending = maxPending;
+    }
+
+    /**
+     * Ставит запись в полосу хаба, не дожидаясь места: ограничение {@code maxPending}
+     * соблюдает потребитель по {@link #isSaturated()}.
+     */
+    void submit(String hubId, TopicPartition partition, long offset, Runnable task) {
+        rethrowFailure();
+        pending.incrementAndGet();
+        synchronized (this) {
+            progress.computeIfAbsent(partition, p -> new PartitionProgress()).start(offset);
+        }
+        lanes.get(HubIdPartitioner.partitionFor(hubId, lanes.size())).execute(() -> {
+            try {
+                if (failure.get() == null) {
+                    task.run();
+                    complete(partition, offset);
+                }
+            } catch (Throwable e) {
+                failure.compareAndSet(null, e);
+            } finally {
+                pending.decrementAndGet();
+            }
+        });
+    }
+
+    boolean isSaturated() {
+        return pending.get() >= maxPending;
+    }
+
+    /**
+     * Партиции, записи которых ещё выполняются в полосах.
+     */
+    synchronized Set<TopicPartition> busyPartitions() {
+        Set<TopicPartition> busy = new HashSet<>();
+        progress.forEach((partition, p) -> {
+            if (!p.inFlight.isEmpty()) {
+                busy.add(partition);
+            }
+        });
+        return busy;
+    }
+
+    /**
+     * Смещения партиций, продвинувшиеся с прошлого вызова.
+     */
+    synchronized Map<TopicPartition, OffsetAndMetadata> committable() {
+        Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>();
+        progress.forEach((partition, p) -> {
+            long offset = p.committable();
+            if (offset > p.committed) {
+                p.committed = offset;
+                offsets.put(partition, new OffsetAndMetadata(offset));
+            }
+        });
+        return offsets;
+    }
+
+    /**
+     * Дожидается, пока полосы выполнят всё, что было поставлено до вызова.
+     */
+    void drain() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(lanes.size());
+        lanes.forEach(lane -> lane.execute(latch::countDown));
+        latch.await();
+    }
+
+    synchronized void forget(Collection<TopicPartition> partitions) {
+        partitions.forEach(progress::remove);
+    }
+
+    void rethrowFailure() {
+        Throwable e = failure.get();
+        if (e != null) {
+            throw new IllegalStateException("Ошибка обработки снимка в полосе", e);
+        }
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        lanes.forEach(ExecutorService::shutdown);
+        for (ExecutorService lane : lanes) {
+            if (!lane.awaitTermination(30, TimeUnit.SECONDS)) {
+                log.warn("Полоса обработки снимков не завершилась за 30 секунд");
+                lane.shutdownNow();
+            }
+        }
+    }
+
+    private synchronized void complete(TopicPartition partition, long offset) {
+        PartitionProgress p = progress.get(partition);
+        if (p != null) {
+            p.inFlight.remove(offset);
+        }
+    }
+
+    private static final class PartitionProgress {
+        private final TreeSet<Long> inFlight = new TreeSet<>();
+        private long next = -1;
+        private long committed = -1;
+
+        private void start(long offset) {
+            inFlight.add(offset);
+            next = offset + 1;
+        }
+
+        private long committable() {
+            return inFlight.isEmpty() ? next : inFlight.first();
+        }
+    }
+}
@@ -2,54 +2,138 @@ package ru.practicum.analyzer.processors;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.avro.specific.SpecificRecordBase;
 import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
 import org.apache.kafka.common.errors.WakeupException;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+import ru.practicum.analyzer.handlers.snapshot.SnapshotDeltaAssembler;
 import ru.practicum.analyzer.handlers.snapshot.SnapshotHandler;
 import ru.yandex.practicum.kafka.telemetry.event.SensorsSnapshotAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SensorsSnapshotDeltaAvro;
 
 import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 
+/**
+ * Читает снимки состояния хабов. С {@code analyzer.snapshots.deltas} читает топик дельт
+ * и собирает из них полные снимки в {@link SnapshotDeltaAssembler}.
+ * <p>
+ * При {@code analyzer.snapshots.lanes} больше одного записи обрабатываются в {@link HubLaneExecutor}:
+ * снимки хаба — по порядку в его полосе, разные хабы — параллельно. Коммитятся только
+ * смещения, ниже которых все записи партиции уже обработаны. Когда в полосах набирается
+ * {@code analyzer.snapshots.max-pending} записей, занятые партиции приостанавливаются,
+ * а опрос продолжается, чтобы потребитель оставался в группе; после разгрузки полос
+ * партиции возобновляются.
+ */
 @Slf4j
 @Component
 @RequiredArgsConstructor
 public class SnapshotProcessor {
 
-    private final Consumer<String, SensorsSnapshotAvro> consumer;
+    private static final Duration POLL_TIMEOUT = Duration.ofMillis(1000);
+    private static final Duration PAUSED_POLL_TIMEOUT = Duration.ofMillis(50);
+
+    private final Consumer<String, SpecificRecordBase> consumer;
     private final SnapshotHandler snapshotHandler;
+    private final SnapshotDeltaAssembler deltaAssembler;
 
     @Value("${topic.snapshots-topic}")
-    private String topic;
+    private String snapshotsTopic;
+    @Value("${topic.snapshot-deltas-topic:telemetry.snapshots.delta.v1}")
+    private String deltasTopic;
+    @Value("${analyzer.snapshots.deltas:false}")
+    private boolean deltas;
+    @Value("${analyzer.snapshots.lanes:1}")
+    private int laneCount;
+    @Value("${analyzer.snapshots.max-pending:1000}")
+    private int maxPending;
+    private final Map<TopicPartition, OffsetAndMetadata> currentOffsets = new HashMap<>();
+    private HubLaneExecutor lanes;
 
     public void start() {
-        consumer.subscribe(List.of(topic));
+        String topic = deltas ? deltasTopic : snapshotsTopic;
+        if (laneCount > 1) {
+            lanes = new HubLaneExecutor(laneCount, maxPending);
+        }
+        consumer.subscribe(List.of(topic), new ConsumerRebalanceListener() {
+            @Override
+            public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+                if (lanes != null) {
+                    drainLanes();
+                    lanes.forget(partitions);
+                }
+                if (!currentOffsets.isEmpty()) {
+                    consumer.commitSync(currentOffsets);
+                    currentOffsets.clear();
+                }
+                if (!partitions.isEmpty()) {
+                    List<Integer> revoked = partitions.stream().map(TopicPartition::partition).toList();
+                    int partitionCount = consumer.partitionsFor(topic).size();
+                    snapshotHandler.forget(revoked, partitionCount);
+                    if (deltas) {
+                        deltaAssembler.forget(revoked, partitionCount);
+                    }
+                }
+                log.info("Отозваны партиции снимков: {}", partitions);
+            }
+
+            @Override
+            public void onPartitionsAssigned(Collection<TopicPartition> partitions) {
+                log.info("Назначены партиции снимков: {}", partitions);
+            }
+        });
 
         Runtime.getRuntime().addShutdownHook(new Thread(consumer::wakeup));
 
         try {
             while (true) {
-                ConsumerRecords<String, SensorsSnapshotAvro> records =
-                        consumer.poll(Duration.ofMillis(1000));
-
-                for (ConsumerRecord<String, SensorsSnapshotAvro> record : records) {
-                    SensorsSnapshotAvro snapshot = record.value();
-                    log.info("Получили снимок состояния умного дома: {}", snapshot);
+                ConsumerRecords<String, SpecificRecordBase> records =
+                        consumer.poll(consumer.paused().isEmpty() ? POLL_TIMEOUT : PAUSED_POLL_TIMEOUT);
 
-                    snapshotHandler.handleSnapshot(snapshot);
+                for (ConsumerRecord<String, SpecificRecordBase> record : records) {
+                    log.info("Получили снимок состояния умного дома: {}", record.value());
+                    TopicPartition partition = new TopicPartition(record.topic(), record.partition());
+                    if (lanes != null) {
+                        lanes.submit(hubIdOf(record.value()), partition, record.offset(),
+                                () -> handle(record.value()));
+                        continue;
+                    }
+                    handle(record.value());
+                    currentOffsets.put(partition, new OffsetAndMetadata(record.offset() + 1));
                 }
 
-                if (!records.isEmpty()) {
+                if (lanes != null) {
+                    commitLanes();
+                    lanes.rethrowFailure();
+                    throttleLanes();
+                } else if (!records.isEmpty()) {
                     consumer.commitSync();
+                    currentOffsets.clear();
                 }
             }
         } catch (WakeupException ignored) {
         } catch (Exception e) {
             log.error("Ошибка чтения данных из топика {}", topic, e);
         } finally {
+            try {
+                if (lanes != null) {
+                    drainLanes();
+                    lanes.close();
+                }
+            } catch (Exception e) {
+                log.warn("Ошибка при остановке полос обработки снимков", e);
+            }
             try {
                 consumer.close();
             } catch (Exception e) {
@@ -57,4 +141,55 @@ public class SnapshotProcessor {
             }
         }
     }
+
+    private void handle(SpecificRecordBase value) {
+        Optional<SensorsSnapshotAvro> snapshot = value instanceof SensorsSnapshotDeltaAvro delta
+                ? deltaAssembler.apply(delta)
+                : Optional.of((SensorsSnapshotAvro) value);
+        snapshot.ifPresent(snapshotHandler::handleSnapshot);
+    }
+
+    private static String hubIdOf(SpecificRecordBase value) {
+        return value instanceof SensorsSnapshotDeltaAvro delta
+                ? delta.getHubId()
+                : ((SensorsSnapshotAvro) value).getHubId();
+    }
+
+    private void commitLanes() {
+        Map<TopicPartition, OffsetAndMetadata> offsets = lanes.committable();
+        if (!offsets.isEmpty()) {
+            consumer.commitSync(offsets);
+        }
+    }
+
+    /**
+     * Приостанавливает занятые партиции, пока полосы заполнены, и возобновляет их после разгрузки.
+     */
+    private void throttleLanes() {
+        if (lanes.isSaturated()) {
+            Set<TopicPartition> busy = lanes.busyPartitions();
+            busy.retainAll(consumer.assignment());
+            busy.removeAll(consumer.paused());
+            if (!busy.isEmpty()) {
+                consumer.pause(busy);
+                log.debug("Полосы обработки снимков заполнены, приостановлены партиции {}", busy);
+            }
+        } else if (!consumer.paused().isEmpty()) {
+            log.debug("Возобновлены партиции снимков {}", consumer.paused());
+            consumer.resume(consumer.paused());
+        }
+    }
+
+    /**
+     * Дожидается полос и коммитит обработанное, например перед отзывом партиций.
+     */
+    private void drainLanes() {
+        try {
+            lanes.drain();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Прервано ожидание полос обработки снимков", e);
+        }
+        commitLanes();
+    }
 }
@@ -1,5 +1,6 @@
 package ru.practicum.analyzer.repository;
 
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import ru.practicum.analyzer.model.Scenario;
 import ru.practicum.analyzer.model.ScenarioAction;
@@ -13,5 +14,8 @@ public interface ScenarioActionRepository
     void deleteByScenario(Scenario scenario);
 
     List<ScenarioAction> findByScenario(Scenario scenario);
+
+    @EntityGraph(attributePaths = {"scenario", "sensor", "action"})
+    List<ScenarioAction> findByScenarioHubId(String hubId);
 }
 
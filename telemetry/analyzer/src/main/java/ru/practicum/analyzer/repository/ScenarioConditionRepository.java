@@ -1,5 +1,6 @@
 package ru.practicum.analyzer.repository;
 
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import ru.practicum.analyzer.model.Scenario;
 import ru.practicum.analyzer.model.ScenarioCondition;
@@ -13,5 +14,8 @@ public interface ScenarioConditionRepository
     void deleteByScenario(Scenario scenario);
 
     List<ScenarioCondition> findByScenario(Scenario scenario);
+
+    @EntityGraph(attributePaths = {"scenario", "sensor", "condition"})
+    List<ScenarioCondition> findByScenarioHubId(String hubId);
 }
 
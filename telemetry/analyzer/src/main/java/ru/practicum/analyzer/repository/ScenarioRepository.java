@@ -1,6 +1,10 @@
 package ru.practicum.analyzer.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 import ru.practicum.analyzer.model.Scenario;
 
 import java.util.List;
@@ -10,4 +14,9 @@ public interface ScenarioRepository extends JpaRepository<Scenario, Long> {
     List<Scenario> findByHubId(String hubId);
 
     Optional<Scenario> findByHubIdAndName(String hubId, String name);
+
+    @Transactional
+    @Modifying
+    @Query("update Scenario s set s.active = :active where s.id = :id")
+    int updateActive(@Param("id") Long id, @Param("active") boolean active);
 }
@@ -0,0 +1,13 @@
+package ru.practicum.analyzer.scenario;
+
+import ru.yandex.practicum.kafka.telemetry.event.ConditionOperationAvro;
+import ru.yandex.practicum.kafka.telemetry.event.ConditionTypeAvro;
+
+/**
+ * Условие сценария, отвязанное от сущностей JPA: датчик, тип, операция и порог.
+ */
+public record CompiledCondition(String sensorId,
+                                ConditionTypeAvro type,
+                                ConditionOperationAvro operation,
+                                int value) {
+}
@@ -0,0 +1,17 @@
+package ru.practicum.analyzer.scenario;
+
+import ru.practicum.analyzer.model.ScenarioAction;
+
+import java.util.List;
+
+/**
+ * Сценарий хаба со всеми условиями и действиями, загруженными заранее.
+ * Действия хранятся сущностями с уже инициализированными сценарием, датчиком и действием,
+ * {@code active} — признак активации на момент загрузки.
+ */
+public record CompiledScenario(Long id,
+                               String name,
+                               boolean active,
+                               List<CompiledCondition> conditions,
+                               List<ScenarioAction> actions) {
+}
@@ -0,0 +1,44 @@
+package ru.practicum.analyzer.scenario;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Сценарии одного хаба и обратный индекс от датчика к сценариям, в условиях
+ * которых он участвует.
+ */
+public final class HubScenarios {
+    private final List<CompiledScenario> scenarios;
+    private final Map<String, List<CompiledScenario>> bySensor;
+
+    HubScenarios(List<CompiledScenario> scenarios) {
+        this.scenarios = List.copyOf(scenarios);
+        Map<String, Set<CompiledScenario>> index = new HashMap<>();
+        for (CompiledScenario scenario : this.scenarios) {
+            for (CompiledCondition condition : scenario.conditions()) {
+                index.computeIfAbsent(condition.sensorId(), id -> new LinkedHashSet<>()).add(scenario);
+            }
+        }
+        this.bySensor = new HashMap<>(index.size());
+        index.forEach((sensorId, affected) -> bySensor.put(sensorId, List.copyOf(affected)));
+    }
+
+    public List<CompiledScenario> all() {
+        return scenarios;
+    }
+
+    /**
+     * Сценарии, условия которых ссылаются хотя бы на один из датчиков, каждый один раз.
+     */
+    public Collection<CompiledScenario> affectedBy(Collection<String> sensorIds) {
+        Set<CompiledScenario> affected = new LinkedHashSet<>();
+        for (String sensorId : sensorIds) {
+            affected.addAll(bySensor.getOrDefault(sensorId, List.of()));
+        }
+        return affected;
+    }
+}
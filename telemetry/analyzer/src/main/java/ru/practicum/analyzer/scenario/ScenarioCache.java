@@ -0,0 +1,85 @@
+package ru.practicum.analyzer.scenario;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.practicum.analyzer.model.Scenario;
+import ru.practicum.analyzer.model.ScenarioAction;
+import ru.practicum.analyzer.model.ScenarioCondition;
+import ru.practicum.analyzer.repository.ScenarioActionRepository;
+import ru.practicum.analyzer.repository.ScenarioConditionRepository;
+import ru.practicum.analyzer.repository.ScenarioRepository;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Сценарии хабов в памяти. Хаб загружается тремя запросами при первом снимке,
+ * дальше снимки проверяются без обращения к базе. Обработчики событий хаба,
+ * меняющие сценарии или устройства, сбрасывают хаб после коммита своей транзакции,
+ * и следующий снимок загружает его заново.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ScenarioCache {
+
+    private final ScenarioRepository scenarioRepository;
+    private final ScenarioConditionRepository scenarioConditionRepository;
+    private final ScenarioActionRepository scenarioActionRepository;
+    private final Map<String, HubScenarios> hubs = new ConcurrentHashMap<>();
+
+    /**
+     * Сценарии хаба. Пока хаб не сброшен, возвращается один и тот же экземпляр,
+     * по которому можно заметить перезагрузку.
+     */
+    public HubScenarios scenarios(String hubId) {
+        return hubs.computeIfAbsent(hubId, this::load);
+    }
+
+    /**
+     * Сбрасывает хаб после коммита текущей транзакции, а вне транзакции — сразу.
+     * Загрузка, начатая до коммита, завершится раньше сброса и не переживёт его.
+     */
+    public void invalidate(String hubId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            hubs.remove(hubId);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                hubs.remove(hubId);
+                log.debug("Сценарии хаба {} сброшены из кэша", hubId);
+            }
+        });
+    }
+
+    private HubScenarios load(String hubId) {
+        Map<Long, List<CompiledCondition>> conditions = new HashMap<>();
+        for (ScenarioCondition sc : scenarioConditionRepository.findByScenarioHubId(hubId)) {
+            conditions.computeIfAbsent(sc.getScenario().getId(), id -> new ArrayList<>())
+                    .add(new CompiledCondition(sc.getSensor().getId(),
+                            sc.getCondition().getType(),
+                            sc.getCondition().getOperation(),
+                            sc.getCondition().getValue()));
+        }
+        Map<Long, List<ScenarioAction>> actions = new HashMap<>();
+        for (ScenarioAction sa : scenarioActionRepository.findByScenarioHubId(hubId)) {
+            actions.computeIfAbsent(sa.getScenario().getId(), id -> new ArrayList<>()).add(sa);
+        }
+        List<CompiledScenario> scenarios = new ArrayList<>();
+        for (Scenario scenario : scenarioRepository.findByHubId(hubId)) {
+            scenarios.add(new CompiledScenario(scenario.getId(), scenario.getName(), scenario.isActive(),
+                    List.copyOf(conditions.getOrDefault(scenario.getId(), List.of())),
+                    List.copyOf(actions.getOrDefault(scenario.getId(), List.of()))));
+        }
+        log.info("Загрузили в кэш {} сценариев хаба {}", scenarios.size(), hubId);
+        return new HubScenarios(scenarios);
+    }
+}
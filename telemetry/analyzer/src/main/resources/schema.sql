@@ -3,9 +3,13 @@ CREATE TABLE IF NOT EXISTS scenarios (
     id BIGINT GENERATED ALWAYS AS IDENTITY PRIMARY KEY,
     hub_id VARCHAR,
     name VARCHAR,
+    active BOOLEAN NOT NULL DEFAULT FALSE,
     UNIQUE(hub_id, name)
 );
 
+-- добавляем признак активации сценария в уже созданную таблицу
+ALTER TABLE scenarios ADD COLUMN IF NOT EXISTS active BOOLEAN NOT NULL DEFAULT FALSE;
+
 -- создаём таблицу sensors
 CREATE TABLE IF NOT EXISTS sensors (
     id VARCHAR PRIMARY KEY,
@@ -0,0 +1,123 @@
+package ru.yandex.practicum.telemetry.benchmarks;
+
+import com.google.protobuf.Timestamp;
+import ru.yandex.practicum.grpc.telemetry.event.ClimateSensorProto;
+import ru.yandex.practicum.grpc.telemetry.event.LightSensorProto;
+import ru.yandex.practicum.grpc.telemetry.event.MotionSensorProto;
+import ru.yandex.practicum.grpc.telemetry.event.SensorEventProto;
+import ru.yandex.practicum.grpc.telemetry.event.SwitchSensorProto;
+import ru.yandex.practicum.grpc.telemetry.event.TemperatureSensorProto;
+import ru.yandex.practicum.kafka.telemetry.event.ClimateSensorAvro;
+import ru.yandex.practicum.kafka.telemetry.event.LightSensorAvro;
+import ru.yandex.practicum.kafka.telemetry.event.MotionSensorAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SensorEventAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SwitchSensorAvro;
+import ru.yandex.practicum.kafka.telemetry.event.TemperatureSensorAvro;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Генератор правдоподобных показаний: хабы и датчики с устойчивыми идентификаторами,
+ * равномерная смесь типов датчиков и значения в реальных диапазонах.
+ */
+public final class TelemetryPayloads {
+    private static final long SEED = 42L;
+    private static final long START_MILLIS = 1_700_000_000_000L;
+
+    private TelemetryPayloads() {
+    }
+
+    public static String hubId(int hub) {
+        return "hub-" + hub;
+    }
+
+    public static String sensorId(int hub, int sensor) {
+        return "hub-" + hub + "-sensor-" + sensor;
+    }
+
+    public static List<SensorEventAvro> sensorEvents(int count, int hubs, int sensorsPerHub) {
+        SplittableRandom random = new SplittableRandom(SEED);
+        List<SensorEventAvro> events = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int hub = random.nextInt(hubs);
+            int sensor = random.nextInt(sensorsPerHub);
+            events.add(SensorEventAvro.newBuilder()
+                    .setId(sensorId(hub, sensor))
+                    .setHubId(hubId(hub))
+                    .setTimestamp(START_MILLIS + i * 100L)
+                    .setPayload(payload(sensor, random))
+                    .build());
+        }
+        return events;
+    }
+
+    public static List<SensorEventProto> sensorEventProtos(int count, int hubs, int sensorsPerHub) {
+        return sensorEvents(count, hubs, sensorsPerHub).stream()
+                .map(TelemetryPayloads::toProto)
+                .toList();
+    }
+
+    public static SensorEventProto toProto(SensorEventAvro event) {
+        SensorEventProto.Builder builder = SensorEventProto.newBuilder()
+                .setId(event.getId())
+                .setHubId(event.getHubId())
+                .setTimestamp(Timestamp.newBuilder()
+                        .setSeconds(event.getTimestamp() / 1000)
+                        .setNanos((int) (event.getTimestamp() % 1000) * 1_000_000));
+        switch (event.getPayload()) {
+            case ClimateSensorAvro climate -> builder.setClimateSensor(ClimateSensorProto.newBuilder()
+                    .setTemperatureC(climate.getTemperatureC())
+                    .setHumidity(climate.getHumidity())
+                    .setCo2Level(climate.getCo2Level()));
+            case LightSensorAvro light -> builder.setLightSensor(LightSensorProto.newBuilder()
+                    .setLinkQuality(light.getLinkQuality())
+                    .setLuminosity(light.getLuminosity()));
+            case MotionSensorAvro motion -> builder.setMotionSensor(MotionSensorProto.newBuilder()
+                    .setLinkQuality(motion.getLinkQuality())
+                    .setMotion(motion.getMotion())
+                    .setVoltage(motion.getVoltage()));
+            case SwitchSensorAvro sw -> builder.setSwitchSensor(SwitchSensorProto.newBuilder()
+                    .setState(sw.getState()));
+            case TemperatureSensorAvro temperature -> builder.setTemperatureSensor(TemperatureSensorProto.newBuilder()
+                    .setTemperatureC(temperature.getTemperatureC())
+                    .setTemperatureF(temperature.getTemperatureF()));
+            default -> throw new IllegalArgumentException("Unknown payload " + event.getPayload());
+        }
+        return builder.build();
+    }
+
+    /**
+     * Тип датчика определяется его номером, чтобы один и тот же датчик всегда
+     * присылал показания одного типа.
+     */
+    public static Object payload(int sensor, SplittableRandom random) {
+        return switch (sensor % 5) {
+            case 0 -> ClimateSensorAvro.newBuilder()
+                    .setTemperatureC(random.nextInt(15, 30))
+                    .setHumidity(random.nextInt(20, 80))
+                    .setCo2Level(random.nextInt(400, 1500))
+                    .build();
+            case 1 -> LightSensorAvro.newBuilder()
+                    .setLinkQuality(random.nextInt(50, 100))
+                    .setLuminosity(random.nextInt(0, 1000))
+                    .build();
+            case 2 -> MotionSensorAvro.newBuilder()
+                    .setLinkQuality(random.nextInt(50, 100))
+                    .setMotion(random.nextBoolean())
+                    .setVoltage(random.nextInt(200, 240))
+                    .build();
+            case 3 -> SwitchSensorAvro.newBuilder()
+                    .setState(random.nextBoolean())
+                    .build();
+            default -> {
+                int celsius = random.nextInt(-10, 35);
+                yield TemperatureSensorAvro.newBuilder()
+                        .setTemperatureC(celsius)
+                        .setTemperatureF(celsius * 9 / 5 + 32)
+                        .build();
+            }
+        };
+    }
+}
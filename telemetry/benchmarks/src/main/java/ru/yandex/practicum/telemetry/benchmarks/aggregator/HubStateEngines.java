@@ -0,0 +1,20 @@
+package ru.yandex.practicum.telemetry.benchmarks.aggregator;
+
+import ru.practicum.aggregator.handler.ColumnarHubStateEngine;
+import ru.practicum.aggregator.handler.HubStateEngine;
+import ru.practicum.aggregator.handler.RawHubStateEngine;
+import ru.practicum.aggregator.handler.SensorEventHandler;
+
+final class HubStateEngines {
+    private HubStateEngines() {
+    }
+
+    static HubStateEngine create(String engine) {
+        return switch (engine) {
+            case "avro" -> new SensorEventHandler();
+            case "columnar" -> new ColumnarHubStateEngine();
+            case "raw" -> new RawHubStateEngine();
+            default -> throw new IllegalArgumentException("Unknown state engine " + engine);
+        };
+    }
+}
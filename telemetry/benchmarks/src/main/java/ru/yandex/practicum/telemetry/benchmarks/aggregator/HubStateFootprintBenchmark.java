@@ -0,0 +1,88 @@
+package ru.yandex.practicum.telemetry.benchmarks.aggregator;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.practicum.aggregator.handler.HubStateEngine;
+import ru.yandex.practicum.kafka.telemetry.event.SensorEventAvro;
+import ru.yandex.practicum.telemetry.benchmarks.TelemetryPayloads;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Память, которую занимает состояние хабов. Каждая итерация заполняет новый движок
+ * {@code hubs * sensorsPerHub} датчиками и считает прирост занятой кучи после полной
+ * сборки мусора; результат — вспомогательный счётчик {@code bytesPerSensor}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class HubStateFootprintBenchmark {
+    private static final MemoryMXBean MEMORY = ManagementFactory.getMemoryMXBean();
+
+    @Param({"10000"})
+    private int hubs;
+
+    @Param({"50"})
+    private int sensorsPerHub;
+
+    @Param({"avro", "columnar", "raw"})
+    private String engine;
+
+    private HubStateEngine retained;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Footprint {
+        public long bytesPerSensor;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            bytesPerSensor = 0;
+        }
+    }
+
+    @Benchmark
+    public HubStateEngine populate(Footprint footprint) {
+        retained = null;
+        long before = usedHeapAfterGc();
+        HubStateEngine state = HubStateEngines.create(engine);
+        SplittableRandom random = new SplittableRandom(11);
+        for (int hub = 0; hub < hubs; hub++) {
+            for (int sensor = 0; sensor < sensorsPerHub; sensor++) {
+                state.update(SensorEventAvro.newBuilder()
+                        .setId(TelemetryPayloads.sensorId(hub, sensor))
+                        .setHubId(TelemetryPayloads.hubId(hub))
+                        .setTimestamp(1_700_000_000_000L)
+                        .setPayload(TelemetryPayloads.payload(sensor, random))
+                        .build());
+            }
+        }
+        retained = state;
+        footprint.bytesPerSensor = (usedHeapAfterGc() - before) / ((long) hubs * sensorsPerHub);
+        return state;
+    }
+
+    private static long usedHeapAfterGc() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return MEMORY.getHeapMemoryUsage().getUsed();
+    }
+}
@@ -0,0 +1,96 @@
+package ru.yandex.practicum.telemetry.benchmarks.aggregator;
+
+import kafka.deserializer.SensorEventDeserializer;
+import kafka.deserializer.SensorEventHeader;
+import kafka.deserializer.SensorEventHeaderDeserializer;
+import kafka.serializer.GeneralAvroSerializer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.practicum.aggregator.handler.HubStateEngine;
+import ru.practicum.aggregator.handler.RawHubStateEngine;
+import ru.practicum.aggregator.handler.SensorEventHandler;
+import ru.yandex.practicum.kafka.telemetry.event.SensorEventAvro;
+import ru.yandex.practicum.telemetry.benchmarks.TelemetryPayloads;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Путь записи через агрегатор от байтов события до байтов снапшота: полное декодирование,
+ * обновление Avro-снапшота и его сериализация против разбора одного заголовка, сравнения
+ * байтов показаний и сборки снапшота из хранимых байтов. События идут по кругу, так что
+ * часть из них не меняет состояние и снапшот не кодируется.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RawEventPathBenchmark {
+    private static final String TOPIC = "telemetry.sensors.v1";
+    private static final int PAYLOADS = 1 << 14;
+
+    @Param({"1000"})
+    private int hubs;
+
+    @Param({"5", "50"})
+    private int sensorsPerHub;
+
+    private final SensorEventDeserializer deserializer = new SensorEventDeserializer();
+    private final SensorEventHeaderDeserializer headerDeserializer = new SensorEventHeaderDeserializer();
+    private final GeneralAvroSerializer serializer = new GeneralAvroSerializer();
+
+    private HubStateEngine decoded;
+    private HubStateEngine raw;
+    private byte[][] encoded;
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        List<SensorEventAvro> events = TelemetryPayloads.sensorEvents(PAYLOADS, hubs, sensorsPerHub);
+        encoded = new byte[PAYLOADS][];
+        for (int i = 0; i < PAYLOADS; i++) {
+            encoded[i] = serializer.serialize(TOPIC, events.get(i));
+        }
+        decoded = new SensorEventHandler();
+        raw = new RawHubStateEngine();
+        for (byte[] record : encoded) {
+            decoded.update(deserializer.deserialize(TOPIC, record));
+            raw.update(headerDeserializer.deserialize(TOPIC, record));
+        }
+    }
+
+    @Benchmark
+    public byte[] decoded() {
+        SensorEventAvro event = deserializer.deserialize(TOPIC, next());
+        if (!decoded.update(event)) {
+            return null;
+        }
+        return serializer.serialize(TOPIC, decoded.snapshot(event.getHubId()).orElseThrow());
+    }
+
+    @Benchmark
+    public byte[] raw() {
+        SensorEventHeader event = headerDeserializer.deserialize(TOPIC, next());
+        if (!raw.update(event)) {
+            return null;
+        }
+        return raw.encodedSnapshot(event.getHubId()).orElseThrow();
+    }
+
+    private byte[] next() {
+        cursor = (cursor + 1) % PAYLOADS;
+        return encoded[cursor];
+    }
+}
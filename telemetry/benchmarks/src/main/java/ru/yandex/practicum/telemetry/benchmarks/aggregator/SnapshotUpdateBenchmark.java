@@ -0,0 +1,83 @@
+package ru.yandex.practicum.telemetry.benchmarks.aggregator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.practicum.aggregator.handler.HubStateEngine;
+import ru.yandex.practicum.kafka.telemetry.event.SensorEventAvro;
+import ru.yandex.practicum.telemetry.benchmarks.TelemetryPayloads;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Обновление снапшотов хабов в агрегаторе. Состояние прогревается полным набором датчиков,
+ * дальше события идут по кругу с растущими метками времени, так что большая часть
+ * из них меняет снапшот, а часть отбрасывается как неизменившаяся. Сравниваются
+ * Avro-снапшоты {@code SensorEventHandler}, колоночное {@code ColumnarHubStateEngine} и
+ * байтовое {@code RawHubStateEngine}; последнему здесь приходится кодировать показания,
+ * его путь от байтов записи до байтов снапшота меряет {@link RawEventPathBenchmark}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SnapshotUpdateBenchmark {
+    private static final int PAYLOADS = 1 << 16;
+
+    @Param({"10", "1000", "10000"})
+    private int hubs;
+
+    @Param({"5", "50"})
+    private int sensorsPerHub;
+
+    @Param({"avro", "columnar", "raw"})
+    private String engine;
+
+    private HubStateEngine handler;
+    private List<SensorEventAvro> events;
+    private long[] timestamps;
+    private int cursor;
+    private long round;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        handler = HubStateEngines.create(engine);
+        events = TelemetryPayloads.sensorEvents(PAYLOADS, hubs, sensorsPerHub);
+        timestamps = events.stream().mapToLong(SensorEventAvro::getTimestamp).toArray();
+        for (int hub = 0; hub < hubs; hub++) {
+            for (int sensor = 0; sensor < sensorsPerHub; sensor++) {
+                handler.update(SensorEventAvro.newBuilder()
+                        .setId(TelemetryPayloads.sensorId(hub, sensor))
+                        .setHubId(TelemetryPayloads.hubId(hub))
+                        .setTimestamp(0)
+                        .setPayload(TelemetryPayloads.payload(sensor, new SplittableRandom(sensor)))
+                        .build());
+            }
+        }
+    }
+
+    @Benchmark
+    public boolean update() {
+        cursor++;
+        if (cursor == PAYLOADS) {
+            cursor = 0;
+            round++;
+        }
+        SensorEventAvro event = events.get(cursor);
+        event.setTimestamp(timestamps[cursor] + round * PAYLOADS * 100L);
+        return handler.update(event);
+    }
+}
@@ -0,0 +1,64 @@
+package ru.yandex.practicum.telemetry.benchmarks.analyzer;
+
+import ru.practicum.analyzer.model.Scenario;
+import ru.practicum.analyzer.model.ScenarioAction;
+import ru.practicum.analyzer.model.ScenarioCondition;
+import ru.practicum.analyzer.repository.ScenarioActionRepository;
+import ru.practicum.analyzer.repository.ScenarioConditionRepository;
+import ru.practicum.analyzer.repository.ScenarioRepository;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Подмена Spring Data репозиториев анализатора для бенчмарков: реализованы только
+ * методы чтения, которые вызывает {@code ScenarioCache}, остальные бросают исключение.
+ */
+final class InMemoryRepositories {
+    private final Map<String, List<Scenario>> scenariosByHub = new HashMap<>();
+    private final Map<String, List<ScenarioCondition>> conditions = new HashMap<>();
+    private final Map<String, List<ScenarioAction>> actions = new HashMap<>();
+
+    void add(Scenario scenario, List<ScenarioCondition> scenarioConditions, List<ScenarioAction> scenarioActions) {
+        scenariosByHub.computeIfAbsent(scenario.getHubId(), hubId -> new ArrayList<>()).add(scenario);
+        conditions.computeIfAbsent(scenario.getHubId(), hubId -> new ArrayList<>()).addAll(scenarioConditions);
+        actions.computeIfAbsent(scenario.getHubId(), hubId -> new ArrayList<>()).addAll(scenarioActions);
+    }
+
+    ScenarioRepository scenarioRepository() {
+        return proxy(ScenarioRepository.class, "findByHubId",
+                args -> scenariosByHub.getOrDefault((String) args[0], List.of()));
+    }
+
+    ScenarioConditionRepository scenarioConditionRepository() {
+        return proxy(ScenarioConditionRepository.class, "findByScenarioHubId",
+                args -> conditions.getOrDefault((String) args[0], List.of()));
+    }
+
+    ScenarioActionRepository scenarioActionRepository() {
+        return proxy(ScenarioActionRepository.class, "findByScenarioHubId",
+                args -> actions.getOrDefault((String) args[0], List.of()));
+    }
+
+    private static <T> T proxy(Class<T> type, String method, Function<Object[], Object> body) {
+        Object repository = Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+                (self, invoked, args) -> {
+                    if (invoked.getName().equals(method)) {
+                        return body.apply(args);
+                    }
+                    if (invoked.getDeclaringClass() == Object.class) {
+                        return switch (invoked.getName()) {
+                            case "hashCode" -> System.identityHashCode(self);
+                            case "equals" -> self == args[0];
+                            default -> type.getSimpleName() + " (in-memory)";
+                        };
+                    }
+                    throw new UnsupportedOperationException(invoked.getName());
+                });
+        return type.cast(repository);
+    }
+}
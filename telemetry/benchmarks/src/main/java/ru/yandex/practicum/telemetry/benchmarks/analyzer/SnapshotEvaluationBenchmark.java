@@ -0,0 +1,192 @@
+package ru.yandex.practicum.telemetry.benchmarks.analyzer;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import ru.practicum.analyzer.client.ScenarioActionProducer;
+import ru.practicum.analyzer.handlers.snapshot.SnapshotHandler;
+import ru.practicum.analyzer.model.Action;
+import ru.practicum.analyzer.model.Condition;
+import ru.practicum.analyzer.model.Scenario;
+import ru.practicum.analyzer.model.ScenarioAction;
+import ru.practicum.analyzer.model.ScenarioCondition;
+import ru.practicum.analyzer.model.Sensor;
+import ru.practicum.analyzer.scenario.ScenarioCache;
+import ru.yandex.practicum.kafka.telemetry.event.ActionTypeAvro;
+import ru.yandex.practicum.kafka.telemetry.event.ConditionOperationAvro;
+import ru.yandex.practicum.kafka.telemetry.event.ConditionTypeAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SensorStateAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SensorsSnapshotAvro;
+import ru.yandex.practicum.telemetry.benchmarks.TelemetryPayloads;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Проверка условий сценариев по снапшоту хаба. Репозитории заменены на in-memory
+ * реализации (после первого снапшота хаба сценарии берутся из {@link ScenarioCache}), отправка действий в hub-router — на {@link Blackhole}, поэтому замер
+ * показывает стоимость самой оценки без базы и сети.
+ * <p>
+ * Перед каждым вызовом у {@code changedSensors} датчиков хаба показания переключаются
+ * между двумя заранее сгенерированными вариантами, так что обработчик видит изменение
+ * части снапшота, как в потоке от агрегатора.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SnapshotEvaluationBenchmark {
+    private static final int HUBS = 64;
+    private static final int SENSORS_PER_HUB = 20;
+
+    @Param({"1", "10", "50"})
+    private int scenariosPerHub;
+
+    @Param({"1", "3"})
+    private int conditionsPerScenario;
+
+    @Param({"1", "20"})
+    private int changedSensors;
+
+    private SnapshotHandler handler;
+    private List<SensorsSnapshotAvro> snapshots;
+    private List<HubReadings> readings;
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void setUp(Blackhole blackhole) {
+        SplittableRandom random = new SplittableRandom(7);
+        InMemoryRepositories repositories = new InMemoryRepositories();
+        snapshots = new ArrayList<>(HUBS);
+        readings = new ArrayList<>(HUBS);
+        long id = 0;
+        for (int hub = 0; hub < HUBS; hub++) {
+            String hubId = TelemetryPayloads.hubId(hub);
+            for (int s = 0; s < scenariosPerHub; s++) {
+                Scenario scenario = Scenario.builder().id(++id).hubId(hubId).name("scenario-" + s).build();
+                List<ScenarioCondition> conditions = new ArrayList<>(conditionsPerScenario);
+                for (int c = 0; c < conditionsPerScenario; c++) {
+                    int sensor = random.nextInt(SENSORS_PER_HUB / 5) * 5 + random.nextInt(4);
+                    conditions.add(ScenarioCondition.builder()
+                            .scenario(scenario)
+                            .sensor(sensor(hub, sensor))
+                            .condition(conditionFor(sensor, random))
+                            .build());
+                }
+                List<ScenarioAction> actions = List.of(ScenarioAction.builder()
+                        .scenario(scenario)
+                        .sensor(sensor(hub, random.nextInt(SENSORS_PER_HUB)))
+                        .action(Action.builder().type(ActionTypeAvro.ACTIVATE).value(0).build())
+                        .build());
+                repositories.add(scenario, conditions, actions);
+            }
+            SensorsSnapshotAvro snapshot = snapshot(hub, random);
+            snapshots.add(snapshot);
+            readings.add(new HubReadings(hub, snapshot, random));
+        }
+
+        ScenarioActionProducer producer = new ScenarioActionProducer(null, null, new SimpleMeterRegistry()) {
+            @Override
+            public boolean sendAction(ScenarioAction scenarioAction) {
+                blackhole.consume(scenarioAction);
+                return true;
+            }
+        };
+        ScenarioCache cache = new ScenarioCache(repositories.scenarioRepository(),
+                repositories.scenarioConditionRepository(),
+                repositories.scenarioActionRepository());
+        handler = new SnapshotHandler(cache, repositories.scenarioRepository(), producer);
+    }
+
+    @Benchmark
+    public void handleSnapshot() {
+        cursor = (cursor + 1) % HUBS;
+        readings.get(cursor).change(changedSensors);
+        handler.handleSnapshot(snapshots.get(cursor));
+    }
+
+    private static Sensor sensor(int hub, int sensor) {
+        return Sensor.builder().id(TelemetryPayloads.sensorId(hub, sensor)).hubId(TelemetryPayloads.hubId(hub)).build();
+    }
+
+    /**
+     * Условие согласовано с типом датчика из {@link TelemetryPayloads#payload}, чтобы
+     * проверка не падала на приведении типа показаний. Условие TEMPERATURE анализатор
+     * читает из климатического датчика, поэтому датчики температуры в условиях не участвуют.
+     */
+    private static Condition conditionFor(int sensor, SplittableRandom random) {
+        ConditionOperationAvro operation = ConditionOperationAvro.values()[random.nextInt(3)];
+        return switch (sensor % 5) {
+            case 0 -> switch (random.nextInt(3)) {
+                case 0 -> condition(ConditionTypeAvro.CO2LEVEL, operation, random.nextInt(400, 1500));
+                case 1 -> condition(ConditionTypeAvro.HUMIDITY, operation, random.nextInt(20, 80));
+                default -> condition(ConditionTypeAvro.TEMPERATURE, operation, random.nextInt(15, 30));
+            };
+            case 1 -> condition(ConditionTypeAvro.LUMINOSITY, operation, random.nextInt(0, 1000));
+            case 2 -> condition(ConditionTypeAvro.MOTION, ConditionOperationAvro.EQUALS, random.nextInt(2));
+            default -> condition(ConditionTypeAvro.SWITCH, ConditionOperationAvro.EQUALS, random.nextInt(2));
+        };
+    }
+
+    private static Condition condition(ConditionTypeAvro type, ConditionOperationAvro operation, int value) {
+        return Condition.builder().type(type).operation(operation).value(value).build();
+    }
+
+    private static SensorsSnapshotAvro snapshot(int hub, SplittableRandom random) {
+        Map<String, SensorStateAvro> states = new HashMap<>();
+        for (int sensor = 0; sensor < SENSORS_PER_HUB; sensor++) {
+            states.put(TelemetryPayloads.sensorId(hub, sensor), SensorStateAvro.newBuilder()
+                    .setTimestamp(1_700_000_000_000L)
+                    .setData(TelemetryPayloads.payload(sensor, random))
+                    .build());
+        }
+        return SensorsSnapshotAvro.newBuilder()
+                .setHubId(TelemetryPayloads.hubId(hub))
+                .setTimestamp(1_700_000_000_000L)
+                .setSensorsState(states)
+                .build();
+    }
+
+    /**
+     * Состояния датчиков снапшота хаба и два варианта показаний для каждого из них.
+     */
+    private static final class HubReadings {
+        private final SensorStateAvro[] states = new SensorStateAvro[SENSORS_PER_HUB];
+        private final Object[][] variants = new Object[SENSORS_PER_HUB][];
+        private final boolean[] flipped = new boolean[SENSORS_PER_HUB];
+        private int next;
+
+        private HubReadings(int hub, SensorsSnapshotAvro snapshot, SplittableRandom random) {
+            for (int sensor = 0; sensor < SENSORS_PER_HUB; sensor++) {
+                states[sensor] = snapshot.getSensorsState().get(TelemetryPayloads.sensorId(hub, sensor));
+                variants[sensor] = new Object[]{states[sensor].getData(), TelemetryPayloads.payload(sensor, random)};
+            }
+        }
+
+        private void change(int count) {
+            for (int i = 0; i < count; i++) {
+                int sensor = next;
+                next = (next + 1) % SENSORS_PER_HUB;
+                flipped[sensor] = !flipped[sensor];
+                states[sensor].setData(variants[sensor][flipped[sensor] ? 1 : 0]);
+            }
+        }
+    }
+}
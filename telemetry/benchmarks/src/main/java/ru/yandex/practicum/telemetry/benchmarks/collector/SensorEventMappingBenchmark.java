@@ -0,0 +1,90 @@
+package ru.yandex.practicum.telemetry.benchmarks.collector;
+
+import kafka.serializer.GeneralAvroSerializer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.yandex.practicum.grpc.telemetry.event.SensorEventProto;
+import ru.yandex.practicum.kafka.telemetry.event.SensorEventAvro;
+import ru.yandex.practicum.telemetry.benchmarks.TelemetryPayloads;
+import ru.yandex.practicum.telemetry.collector.service.handler.sensor.BaseSensorHandlerProto;
+import ru.yandex.practicum.telemetry.collector.service.handler.sensor.ClimateEventHandler;
+import ru.yandex.practicum.telemetry.collector.service.handler.sensor.LightEventHandler;
+import ru.yandex.practicum.telemetry.collector.service.handler.sensor.MotionEventHandler;
+import ru.yandex.practicum.telemetry.collector.service.handler.sensor.SwitchEventHandler;
+import ru.yandex.practicum.telemetry.collector.service.handler.sensor.TemperatureEventHandler;
+import ru.yandex.practicum.telemetry.collector.service.transcoder.SensorEventAvroTranscoder;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Путь события датчика в коллекторе до Kafka: построение {@link SensorEventAvro} обработчиком
+ * и сериализация против прямого транскодирования protobuf в бинарный Avro.
+ * Обработчики создаются без продюсера и подавителя: {@code toAvro} их не использует.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SensorEventMappingBenchmark {
+    private static final String TOPIC = "telemetry.sensors.v1";
+    private static final int PAYLOADS = 1024;
+
+    private final Map<SensorEventProto.PayloadCase, BaseSensorHandlerProto> handlers =
+            new EnumMap<>(SensorEventProto.PayloadCase.class);
+    private final GeneralAvroSerializer serializer = new GeneralAvroSerializer();
+    private final SensorEventAvroTranscoder transcoder = new SensorEventAvroTranscoder();
+
+    private List<SensorEventProto> events;
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        register(new ClimateEventHandler(null, null, null));
+        register(new LightEventHandler(null, null, null));
+        register(new MotionEventHandler(null, null, null));
+        register(new SwitchEventHandler(null, null, null));
+        register(new TemperatureEventHandler(null, null, null));
+        events = TelemetryPayloads.sensorEventProtos(PAYLOADS, 100, 20);
+    }
+
+    @Benchmark
+    public SensorEventAvro toAvro() {
+        SensorEventProto event = next();
+        return handlers.get(event.getPayloadCase()).toAvro(event);
+    }
+
+    @Benchmark
+    public byte[] toAvroAndSerialize() {
+        SensorEventProto event = next();
+        return serializer.serialize(TOPIC, handlers.get(event.getPayloadCase()).toAvro(event));
+    }
+
+    @Benchmark
+    public byte[] transcode() {
+        SensorEventProto event = next();
+        return transcoder.encode(event, event.getTimestamp().getSeconds() * 1000);
+    }
+
+    private void register(BaseSensorHandlerProto handler) {
+        handlers.put(handler.getMessageType(), handler);
+    }
+
+    private SensorEventProto next() {
+        cursor = (cursor + 1) & (PAYLOADS - 1);
+        return events.get(cursor);
+    }
+}
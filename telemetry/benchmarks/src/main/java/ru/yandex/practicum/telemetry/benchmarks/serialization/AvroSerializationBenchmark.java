@@ -0,0 +1,119 @@
+package ru.yandex.practicum.telemetry.benchmarks.serialization;
+
+import kafka.deserializer.SensorEventDeserializer;
+import kafka.serializer.GeneralAvroSerializer;
+import org.apache.avro.io.BinaryDecoder;
+import org.apache.avro.io.DatumWriter;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.io.Encoder;
+import org.apache.avro.io.EncoderFactory;
+import org.apache.avro.specific.SpecificDatumReader;
+import org.apache.avro.specific.SpecificDatumWriter;
+import org.apache.avro.specific.SpecificRecordBase;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.yandex.practicum.kafka.telemetry.event.SensorEventAvro;
+import ru.yandex.practicum.telemetry.benchmarks.TelemetryPayloads;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сравнивает сериализацию и десериализацию событий датчиков до и после кеширования
+ * писателей/читателей и переиспользования буферов. Аллокации на сообщение смотреть
+ * в {@code gc.alloc.rate.norm} профилировщика {@code -prof gc}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AvroSerializationBenchmark {
+    private static final String TOPIC = "telemetry.sensors.v1";
+    private static final int PAYLOADS = 1024;
+
+    private final GeneralAvroSerializer serializer = new GeneralAvroSerializer();
+    private final SensorEventDeserializer deserializer = new SensorEventDeserializer();
+
+    private List<SensorEventAvro> events;
+    private byte[][] encoded;
+    private SensorEventAvro reuse;
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        events = TelemetryPayloads.sensorEvents(PAYLOADS, 100, 20);
+        encoded = new byte[PAYLOADS][];
+        for (int i = 0; i < PAYLOADS; i++) {
+            encoded[i] = serializer.serialize(TOPIC, events.get(i));
+        }
+        reuse = new SensorEventAvro();
+    }
+
+    @Benchmark
+    public byte[] serializeUncached() throws IOException {
+        return LegacyAvro.serialize(next(events));
+    }
+
+    @Benchmark
+    public byte[] serializeCached() {
+        return serializer.serialize(TOPIC, next(events));
+    }
+
+    @Benchmark
+    public SensorEventAvro deserializeUncached() throws IOException {
+        return LegacyAvro.deserialize(encoded[nextIndex()]);
+    }
+
+    @Benchmark
+    public SensorEventAvro deserializeCached() {
+        return deserializer.deserialize(TOPIC, encoded[nextIndex()]);
+    }
+
+    @Benchmark
+    public SensorEventAvro deserializeReuse() {
+        reuse = deserializer.deserialize(TOPIC, encoded[nextIndex()], reuse);
+        return reuse;
+    }
+
+    private <T> T next(List<T> values) {
+        return values.get(nextIndex());
+    }
+
+    private int nextIndex() {
+        cursor = (cursor + 1) & (PAYLOADS - 1);
+        return cursor;
+    }
+
+    /**
+     * Прежняя реализация сериализатора и десериализатора, оставлена как точка отсчёта.
+     */
+    private static final class LegacyAvro {
+        static byte[] serialize(SpecificRecordBase data) throws IOException {
+            try (ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
+                Encoder encoder = EncoderFactory.get().binaryEncoder(baos, null);
+                DatumWriter<SpecificRecordBase> writer = new SpecificDatumWriter<>(data.getSchema());
+                writer.write(data, encoder);
+                encoder.flush();
+                return baos.toByteArray();
+            }
+        }
+
+        static SensorEventAvro deserialize(byte[] data) throws IOException {
+            BinaryDecoder decoder = DecoderFactory.get().binaryDecoder(data, null);
+            return new SpecificDatumReader<SensorEventAvro>(SensorEventAvro.getClassSchema()).read(null, decoder);
+        }
+    }
+}
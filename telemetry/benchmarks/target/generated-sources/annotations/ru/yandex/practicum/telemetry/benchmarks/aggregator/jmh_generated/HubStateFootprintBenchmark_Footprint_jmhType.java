@@ -0,0 +1,4 @@
+package ru.yandex.practicum.telemetry.benchmarks.aggregator.jmh_generated;
+public class HubStateFootprintBenchmark_Footprint_jmhType extends HubStateFootprintBenchmark_Footprint_jmhType_B3 {
+}
+
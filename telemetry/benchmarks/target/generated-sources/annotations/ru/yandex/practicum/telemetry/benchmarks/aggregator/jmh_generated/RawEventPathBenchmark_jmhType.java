@@ -0,0 +1,4 @@
+package ru.yandex.practicum.telemetry.benchmarks.aggregator.jmh_generated;
+public class RawEventPathBenchmark_jmhType extends RawEventPathBenchmark_jmhType_B3 {
+}
+
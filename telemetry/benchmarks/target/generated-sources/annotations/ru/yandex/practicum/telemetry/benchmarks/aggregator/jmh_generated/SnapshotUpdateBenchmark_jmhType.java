@@ -0,0 +1,4 @@
+package ru.yandex.practicum.telemetry.benchmarks.aggregator.jmh_generated;
+public class SnapshotUpdateBenchmark_jmhType extends SnapshotUpdateBenchmark_jmhType_B3 {
+}
+
@@ -0,0 +1,4 @@
+package ru.yandex.practicum.telemetry.benchmarks.analyzer.jmh_generated;
+public class SnapshotEvaluationBenchmark_jmhType extends SnapshotEvaluationBenchmark_jmhType_B3 {
+}
+
@@ -0,0 +1,4 @@
+package ru.yandex.practicum.telemetry.benchmarks.collector.jmh_generated;
+public class SensorEventMappingBenchmark_jmhType extends SensorEventMappingBenchmark_jmhType_B3 {
+}
+
@@ -0,0 +1,4 @@
+package ru.yandex.practicum.telemetry.benchmarks.serialization.jmh_generated;
+public class AvroSerializationBenchmark_jmhType extends AvroSerializationBenchmark_jmhType_B3 {
+}
+
@@ -1,33 +1,231 @@
 package ru.yandex.practicum.telemetry.collector;
 
+import jakarta.annotation.PreDestroy;
+import kafka.serializer.GeneralAvroSerializer;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.ToString;
+import lombok.extern.slf4j.Slf4j;
 import org.apache.avro.specific.SpecificRecordBase;
 import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.ProducerConfig;
 import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.BufferExhaustedException;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.errors.RetriableException;
 import org.springframework.stereotype.Component;
 import ru.yandex.practicum.telemetry.collector.configuration.KafkaConfig;
+import ru.yandex.practicum.telemetry.collector.configuration.SpoolConfig;
+import ru.yandex.practicum.telemetry.collector.model.exception.InFlightLimitExceededException;
+import ru.yandex.practicum.telemetry.collector.service.spool.EventSpool;
+import ru.yandex.practicum.telemetry.collector.service.spool.SpooledRecord;
 
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+@Slf4j
 @Component
 @Getter
 @Setter
 @ToString
 public class KafkaEventProducer {
-    private final KafkaProducer<String, SpecificRecordBase> producer;
+    private static final long DEFAULT_DELIVERY_TIMEOUT_MS = 120_000;
+
+    private final KafkaProducer<String, byte[]> producer;
     private final KafkaConfig config;
+    @ToString.Exclude
+    private final GeneralAvroSerializer serializer = new GeneralAvroSerializer();
+    @ToString.Exclude
+    private final Map<String, Integer> inFlightPerHub = new ConcurrentHashMap<>();
+    @ToString.Exclude
+    private final EventSpool spool;
+    @ToString.Exclude
+    private final ScheduledExecutorService spoolDrainer;
+    private final int drainBatchSize;
+    private final long deliveryTimeoutMs;
 
-    public KafkaEventProducer(KafkaConfig kafkaConfig) {
+    public KafkaEventProducer(KafkaConfig kafkaConfig, SpoolConfig spoolConfig, EventSpool spool) {
         this.config = kafkaConfig;
-        this.producer = new KafkaProducer<>(kafkaConfig.getProducerProperties());
+        Properties properties = kafkaConfig.getProducerProperties();
+        if (spool.isEnabled()) {
+            properties.putAll(spoolConfig.getProducerProperties());
+        }
+        this.producer = new KafkaProducer<>(properties);
+        this.deliveryTimeoutMs = Long.parseLong(properties.getProperty(ProducerConfig.DELIVERY_TIMEOUT_MS_CONFIG,
+                String.valueOf(DEFAULT_DELIVERY_TIMEOUT_MS)));
+        this.spool = spool;
+        this.drainBatchSize = spoolConfig.getDrainBatchSize();
+        if (spool.isEnabled()) {
+            long interval = spoolConfig.getDrainInterval().toMillis();
+            this.spoolDrainer = Executors.newSingleThreadScheduledExecutor(r -> new Thread(r, "collector-spool-drainer"));
+            this.spoolDrainer.scheduleWithFixedDelay(this::drainSpool, interval, interval, TimeUnit.MILLISECONDS);
+        } else {
+            this.spoolDrainer = null;
+        }
+    }
+
+    public CompletableFuture<RecordMetadata> sendRecord(ProducerRecord<String, SpecificRecordBase> record) {
+        byte[] value;
+        try {
+            value = serializer.serialize(record.topic(), record.value());
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return sendBytes(new ProducerRecord<>(record.topic(), record.partition(), record.timestamp(),
+                record.key(), value, record.headers()));
     }
 
-    public void sendRecord(ProducerRecord<String, SpecificRecordBase> record) {
-        producer.send(record, (metadata, exception) -> {
-            if (exception != null) {
-                throw new RuntimeException("Failed to send record to Kafka", exception);
+    /**
+     * Отправляет уже закодированную запись без ожидания брокера. Возвращаемый future
+     * завершается, когда брокер подтвердит запись или вернёт ошибку. Число
+     * неподтверждённых записей одного хаба (ключа записи) ограничено
+     * {@code max-in-flight-per-hub}.
+     * <p>
+     * При включённом спуле запись, которую не удалось передать из-за переполненного буфера
+     * или недоступного брокера, сохраняется на диск, и future завершается успешно (без метаданных).
+     * Пока спул не пуст или вычитывается, новые записи тоже идут в него, чтобы не обгонять
+     * ранее сохранённые.
+     */
+    public CompletableFuture<RecordMetadata> sendBytes(ProducerRecord<String, byte[]> record) {
+        if (spool.isEnabled()) {
+            EventSpool.Routing routing = spool.route(record);
+            if (routing == EventSpool.Routing.SPOOLED) {
+                return CompletableFuture.completedFuture(null);
             }
+            if (routing == EventSpool.Routing.FULL) {
+                return CompletableFuture.failedFuture(new BufferExhaustedException("Collector spool is full"));
+            }
+        }
+
+        int limit = config.getMaxInFlightPerHub();
+        if (!acquireInFlight(record.key(), limit)) {
+            return CompletableFuture.failedFuture(new InFlightLimitExceededException(record.key(), limit));
+        }
+
+        CompletableFuture<RecordMetadata> result = new CompletableFuture<>();
+        try {
+            producer.send(record, (metadata, exception) -> {
+                if (exception == null) {
+                    if (result.complete(metadata)) {
+                        releaseInFlight(record.key());
+                    }
+                    return;
+                }
+                log.warn("Failed to send record to Kafka topic {}, key {}", record.topic(), record.key(), exception);
+                fail(record, result, exception);
+            });
+        } catch (Exception e) {
+            fail(record, result, e);
+        }
+        return result;
+    }
+
+    private void fail(ProducerRecord<String, byte[]> record, CompletableFuture<RecordMetadata> result,
+                      Exception exception) {
+        if (spool.isEnabled() && isSpoolable(exception)) {
+            spool(record, exception).whenComplete((metadata, e) -> {
+                boolean completed = e == null ? result.complete(metadata) : result.completeExceptionally(e);
+                if (completed) {
+                    releaseInFlight(record.key());
+                }
+            });
+            return;
+        }
+        if (result.completeExceptionally(exception)) {
+            releaseInFlight(record.key());
+        }
+    }
+
+    /**
+     * Учитывает неподтверждённую запись хаба, если их меньше {@code limit}. Счётчик хаба
+     * меняется атомарно в {@link ConcurrentHashMap#compute} и удаляется, когда все записи
+     * хаба подтверждены, поэтому карта не растёт с числом когда-либо виденных хабов.
+     */
+    private boolean acquireInFlight(String hubId, int limit) {
+        boolean[] acquired = new boolean[1];
+        inFlightPerHub.compute(hubId, (key, count) -> {
+            int current = count != null ? count : 0;
+            acquired[0] = current < limit;
+            return acquired[0] ? Integer.valueOf(current + 1) : count;
         });
-        producer.flush();
+        return acquired[0];
+    }
+
+    private void releaseInFlight(String hubId) {
+        inFlightPerHub.computeIfPresent(hubId, (key, count) -> count > 1 ? count - 1 : null);
+    }
+
+    private CompletableFuture<RecordMetadata> spool(ProducerRecord<String, byte[]> record, Exception cause) {
+        if (spool.append(record)) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return CompletableFuture.failedFuture(cause);
+    }
+
+    private static boolean isSpoolable(Exception exception) {
+        return exception instanceof RetriableException || exception instanceof BufferExhaustedException;
+    }
+
+    /**
+     * Отправляет записи из головы спула по одной, в исходном порядке, и удаляет каждую из спула
+     * после подтверждения брокером. На первой ошибке проход останавливается, так что в Kafka не
+     * попадают записи после неподтверждённой и следующий проход не повторяет уже доставленные.
+     * Подтверждение ждём не дольше {@code delivery.timeout.ms}; если оно не пришло, запись ещё
+     * может быть в пути, и спул остаётся занятым до следующего прохода.
+     */
+    private void drainSpool() {
+        try {
+            List<SpooledRecord> batch = spool.peek(drainBatchSize);
+            if (batch.isEmpty()) {
+                spool.draining(false);
+                return;
+            }
+            spool.draining(true);
+            boolean settled = true;
+            int delivered = 0;
+            for (SpooledRecord record : batch) {
+                try {
+                    producer.send(new ProducerRecord<>(record.topic(), null, record.timestamp(),
+                                    record.key(), record.value(), record.headers()))
+                            .get(deliveryTimeoutMs, TimeUnit.MILLISECONDS);
+                } catch (TimeoutException e) {
+                    settled = false;
+                    break;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    settled = false;
+                    break;
+                } catch (Exception e) {
+                    break;
+                }
+                spool.remove(List.of(record));
+                delivered++;
+            }
+            spool.force();
+            if (delivered < batch.size()) {
+                log.warn("Kafka is still unavailable, {} records remain in spool", spool.depth());
+            }
+            if (settled) {
+                spool.draining(false);
+            }
+        } catch (Exception e) {
+            log.error("Failed to drain collector spool", e);
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        if (spoolDrainer != null) {
+            spoolDrainer.shutdown();
+        }
+        producer.close(Duration.ofSeconds(10));
     }
-}
\ No newline at end of file
+}
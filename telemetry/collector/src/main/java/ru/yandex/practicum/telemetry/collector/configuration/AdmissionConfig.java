@@ -0,0 +1,18 @@
+package ru.yandex.practicum.telemetry.collector.configuration;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties("collector.admission")
+@Component
+public class AdmissionConfig {
+    private boolean enabled = true;
+    private double eventsPerSecondPerHub = 500;
+    private int burstPerHub = 1000;
+    private int maxInFlight = 20000;
+    private Duration idleTimeout = Duration.ofMinutes(10);
+}
@@ -0,0 +1,16 @@
+package ru.yandex.practicum.telemetry.collector.configuration;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties("collector.batching")
+@Component
+public class BatchingConfig {
+    private boolean enabled = false;
+    private int maxReadings = 100;
+    private Duration linger = Duration.ofMillis(10);
+}
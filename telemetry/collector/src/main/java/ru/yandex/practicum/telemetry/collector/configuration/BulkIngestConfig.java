@@ -0,0 +1,13 @@
+package ru.yandex.practicum.telemetry.collector.configuration;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@ConfigurationProperties("collector.bulk")
+@Component
+public class BulkIngestConfig {
+    private int maxInFlightPerRequest = 1000;
+    private int maxLineLength = 64 * 1024;
+}
@@ -13,6 +13,8 @@ import java.util.Properties;
 public class KafkaConfig {
     private Map<String, String> topics;
     private Map<String, String> producerProperties;
+    private int maxInFlightPerHub = 1000;
+    private boolean directTranscoding = true;
     
     public Properties getProducerProperties() {
         Properties props = new Properties();
@@ -21,4 +23,4 @@ public class KafkaConfig {
         }
         return props;
     }
-}
\ No newline at end of file
+}
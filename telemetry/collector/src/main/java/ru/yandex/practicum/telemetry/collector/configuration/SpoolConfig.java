@@ -0,0 +1,26 @@
+package ru.yandex.practicum.telemetry.collector.configuration;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+@Data
+@ConfigurationProperties("collector.spool")
+@Component
+public class SpoolConfig {
+    private boolean enabled = false;
+    private String path = "spool/collector.spool";
+    private DataSize capacity = DataSize.ofMegabytes(256);
+    private Duration drainInterval = Duration.ofMillis(500);
+    private int drainBatchSize = 500;
+    /**
+     * Настройки продюсера, которые действуют только при включённом спуле: короткие таймауты,
+     * чтобы недоступность брокера быстро уводила записи на диск.
+     */
+    private Map<String, String> producerProperties = new HashMap<>();
+}
@@ -0,0 +1,16 @@
+package ru.yandex.practicum.telemetry.collector.configuration;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties("collector.suppression")
+@Component
+public class SuppressionConfig {
+    private boolean enabled = false;
+    private int maxEntries = 100_000;
+    private Duration maxSilence = Duration.ofSeconds(60);
+}
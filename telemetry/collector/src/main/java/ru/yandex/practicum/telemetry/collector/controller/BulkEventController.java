@@ -0,0 +1,29 @@
+package ru.yandex.practicum.telemetry.collector.controller;
+
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import ru.yandex.practicum.telemetry.collector.model.BulkIngestResult;
+import ru.yandex.practicum.telemetry.collector.service.bulk.BulkEventIngestService;
+
+import java.io.IOException;
+
+@RestController
+@RequestMapping("/events")
+@RequiredArgsConstructor
+public class BulkEventController {
+    private final BulkEventIngestService ingestService;
+
+    @PostMapping(path = "/sensors/bulk", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public BulkIngestResult collectSensorEvents(HttpServletRequest request) throws IOException {
+        return ingestService.ingestSensorEvents(request.getInputStream());
+    }
+
+    @PostMapping(path = "/hubs/bulk", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public BulkIngestResult collectHubEvents(HttpServletRequest request) throws IOException {
+        return ingestService.ingestHubEvents(request.getInputStream());
+    }
+}
@@ -1,19 +1,24 @@
 package ru.yandex.practicum.telemetry.collector.controller;
 
 import com.google.protobuf.Empty;
-import io.grpc.Status;
-import io.grpc.StatusRuntimeException;
 import io.grpc.stub.StreamObserver;
 import lombok.extern.slf4j.Slf4j;
 import net.devh.boot.grpc.server.service.GrpcService;
+import ru.yandex.practicum.telemetry.collector.service.admission.AdmissionLimiter;
+import ru.yandex.practicum.telemetry.collector.service.batch.SensorEventBatcher;
+import ru.yandex.practicum.telemetry.collector.service.handler.ErrorHandler;
 import ru.yandex.practicum.telemetry.collector.service.handler.hub.HubEventHandlerProto;
 import ru.yandex.practicum.telemetry.collector.service.handler.sensor.SensorEventHandlerProto;
 import ru.yandex.practicum.grpc.telemetry.collector.CollectorControllerGrpc;
 import ru.yandex.practicum.grpc.telemetry.event.HubEventProto;
+import ru.yandex.practicum.grpc.telemetry.event.SensorEventBatchProto;
 import ru.yandex.practicum.grpc.telemetry.event.SensorEventProto;
 
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -23,48 +28,188 @@ public class EventController extends CollectorControllerGrpc.CollectorController
 
     private final Map<SensorEventProto.PayloadCase, SensorEventHandlerProto> sensorEventHandlers;
     private final Map<HubEventProto.PayloadCase, HubEventHandlerProto> hubEventHandlers;
+    private final ErrorHandler errorHandler;
+    private final AdmissionLimiter admissionLimiter;
+    private final SensorEventBatcher batcher;
 
     public EventController(Set<SensorEventHandlerProto> sensorEventHandlers,
-                           Set<HubEventHandlerProto> hubEventHandlers) {
+                           Set<HubEventHandlerProto> hubEventHandlers,
+                           ErrorHandler errorHandler,
+                           AdmissionLimiter admissionLimiter,
+                           SensorEventBatcher batcher) {
         this.sensorEventHandlers = sensorEventHandlers.stream()
                 .collect(Collectors.toMap(SensorEventHandlerProto::getMessageType, Function.identity()));
         this.hubEventHandlers = hubEventHandlers.stream()
                 .collect(Collectors.toMap(HubEventHandlerProto::getMessageType, Function.identity()));
+        this.errorHandler = errorHandler;
+        this.admissionLimiter = admissionLimiter;
+        this.batcher = batcher;
     }
 
     @Override
     public void collectSensorEvent(SensorEventProto request, StreamObserver<Empty> responseObserver) {
-        SensorEventProto.PayloadCase sensorEventType = request.getPayloadCase();
         log.info("Получили сообщение датчика {}", request);
-        try {
-            if (sensorEventHandlers.containsKey(sensorEventType)) {
-                log.info("Отправляем сообщение на обработку");
-                sensorEventHandlers.get(sensorEventType).handle(request);
-            } else {
-                throw new IllegalArgumentException("Не могу найти обработчик для события " + sensorEventType);
+        handleSensorEvent(request)
+                .whenComplete((ignored, e) -> complete(responseObserver, e));
+    }
+
+    @Override
+    public StreamObserver<SensorEventProto> collectSensorEventStream(StreamObserver<Empty> responseObserver) {
+        PendingAck ack = new PendingAck(responseObserver);
+        return new StreamObserver<>() {
+            private int received;
+
+            @Override
+            public void onNext(SensorEventProto request) {
+                if (ack.failed()) {
+                    return;
+                }
+                received++;
+                ack.track(handleStreamedSensorEvent(request));
             }
-            responseObserver.onNext(Empty.getDefaultInstance());
-            responseObserver.onCompleted();
-        } catch (Exception e) {
-            responseObserver.onError(new StatusRuntimeException(Status.fromThrowable(e)));
+
+            @Override
+            public void onError(Throwable t) {
+                log.warn("Клиент прервал поток событий датчиков после {} сообщений", received, t);
+                ack.cancel();
+            }
+
+            @Override
+            public void onCompleted() {
+                log.info("Поток событий датчиков завершён, получено {} сообщений", received);
+                ack.close();
+            }
+        };
+    }
+
+    @Override
+    public void collectSensorEvents(SensorEventBatchProto request, StreamObserver<Empty> responseObserver) {
+        log.info("Получили пакет из {} сообщений датчиков", request.getEventsCount());
+        PendingAck ack = new PendingAck(responseObserver);
+        for (SensorEventProto event : request.getEventsList()) {
+            if (ack.failed()) {
+                break;
+            }
+            ack.track(handleStreamedSensorEvent(event));
         }
+        ack.close();
     }
 
     @Override
     public void collectHubEvent(HubEventProto request, StreamObserver<Empty> responseObserver) {
         HubEventProto.PayloadCase hubEventType = request.getPayloadCase();
         log.info("Получили сообщение хаба типа: {}", hubEventType);
+        admissionLimiter.admit(request.getHubId(), () -> handleHubEvent(request))
+                .whenComplete((ignored, e) -> complete(responseObserver, e));
+    }
+
+    private CompletableFuture<Void> handleHubEvent(HubEventProto request) {
+        HubEventProto.PayloadCase hubEventType = request.getPayloadCase();
         try {
             if (hubEventHandlers.containsKey(hubEventType)) {
                 log.info("Отправляем сообщение на обработку");
-                hubEventHandlers.get(hubEventType).handle(request);
+                return hubEventHandlers.get(hubEventType).handle(request);
             } else {
                 throw new IllegalArgumentException("Не могу найти обработчик для события " + hubEventType);
             }
-            responseObserver.onNext(Empty.getDefaultInstance());
-            responseObserver.onCompleted();
         } catch (Exception e) {
-            responseObserver.onError(new StatusRuntimeException(Status.fromThrowable(e)));
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private CompletableFuture<Void> handleSensorEvent(SensorEventProto event) {
+        return admissionLimiter.admit(event.getHubId(), () -> dispatchSensorEvent(event));
+    }
+
+    /**
+     * События из потока и пакетного вызова при включённом {@code collector.batching}
+     * упаковываются по хабам в {@link SensorEventBatcher}, одиночные вызовы отправляются как есть.
+     */
+    private CompletableFuture<Void> handleStreamedSensorEvent(SensorEventProto event) {
+        if (!batcher.isEnabled()) {
+            return handleSensorEvent(event);
+        }
+        return admissionLimiter.admit(event.getHubId(), () -> batchSensorEvent(event));
+    }
+
+    private CompletableFuture<Void> batchSensorEvent(SensorEventProto event) {
+        SensorEventHandlerProto handler = sensorEventHandlers.get(event.getPayloadCase());
+        if (handler == null) {
+            return CompletableFuture.failedFuture(
+                    new IllegalArgumentException("Не могу найти обработчик для события " + event.getPayloadCase()));
+        }
+        try {
+            return batcher.add(event, handler.toAvro(event));
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private CompletableFuture<Void> dispatchSensorEvent(SensorEventProto event) {
+        SensorEventProto.PayloadCase sensorEventType = event.getPayloadCase();
+        SensorEventHandlerProto handler = sensorEventHandlers.get(sensorEventType);
+        if (handler == null) {
+            return CompletableFuture.failedFuture(
+                    new IllegalArgumentException("Не могу найти обработчик для события " + sensorEventType));
+        }
+        log.debug("Отправляем сообщение {} на обработку", event.getId());
+        try {
+            return handler.handle(event);
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private void complete(StreamObserver<Empty> responseObserver, Throwable error) {
+        if (error != null) {
+            responseObserver.onError(errorHandler.handleAsyncException(error));
+            return;
+        }
+        responseObserver.onNext(Empty.getDefaultInstance());
+        responseObserver.onCompleted();
+    }
+
+    /**
+     * Подтверждение пакета событий: ответ отправляется один раз, когда вызов
+     * закрыт и брокер подтвердил (или отклонил) все отправленные события.
+     */
+    private final class PendingAck {
+        private final StreamObserver<Empty> responseObserver;
+        private final AtomicInteger pending = new AtomicInteger(1);
+        private final AtomicReference<Throwable> error = new AtomicReference<>();
+        private volatile boolean cancelled;
+
+        private PendingAck(StreamObserver<Empty> responseObserver) {
+            this.responseObserver = responseObserver;
+        }
+
+        void track(CompletableFuture<Void> result) {
+            pending.incrementAndGet();
+            result.whenComplete((ignored, e) -> {
+                if (e != null) {
+                    error.compareAndSet(null, e);
+                }
+                arrive();
+            });
+        }
+
+        boolean failed() {
+            return error.get() != null;
+        }
+
+        void cancel() {
+            cancelled = true;
+            arrive();
+        }
+
+        void close() {
+            arrive();
+        }
+
+        private void arrive() {
+            if (pending.decrementAndGet() == 0 && !cancelled) {
+                complete(responseObserver, error.get());
+            }
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,14 @@
+package ru.yandex.practicum.telemetry.collector.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkIngestResult {
+    private long accepted;
+    private long rejected;
+    private long failed;
+}
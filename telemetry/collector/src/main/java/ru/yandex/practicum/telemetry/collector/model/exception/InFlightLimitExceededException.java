@@ -0,0 +1,7 @@
+package ru.yandex.practicum.telemetry.collector.model.exception;
+
+public class InFlightLimitExceededException extends RuntimeException {
+    public InFlightLimitExceededException(String hubId, int limit) {
+        super("Превышен лимит неподтверждённых событий хаба " + hubId + ": " + limit);
+    }
+}
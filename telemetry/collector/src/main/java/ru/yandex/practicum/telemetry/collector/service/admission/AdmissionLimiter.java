@@ -0,0 +1,124 @@
+package ru.yandex.practicum.telemetry.collector.service.admission;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.telemetry.collector.configuration.AdmissionConfig;
+import ru.yandex.practicum.telemetry.collector.model.exception.AdmissionRejectedException;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Допуск событий к обработке: token bucket на каждый хаб и общий лимит
+ * одновременно обрабатываемых событий, чтобы один хаб не мог занять
+ * коллектор целиком. Лимиты и счётчики хаба, от которого не было событий дольше
+ * {@code idle-timeout}, удаляются: за это время его bucket всё равно наполняется
+ * заново, а число хабов и метрик не растёт с каждым когда-либо увиденным {@code hub_id}.
+ */
+@Slf4j
+@Component
+public class AdmissionLimiter {
+    private static final long IN_FLIGHT_RETRY_AFTER_MILLIS = 100;
+
+    private final AdmissionConfig config;
+    private final MeterRegistry meterRegistry;
+    private final Semaphore inFlight;
+    private final Map<String, HubLimits> hubs = new ConcurrentHashMap<>();
+    private final long idleTimeoutNanos;
+    private final AtomicLong nextSweepNanos;
+
+    public AdmissionLimiter(AdmissionConfig config, MeterRegistry meterRegistry) {
+        this.config = config;
+        this.meterRegistry = meterRegistry;
+        this.inFlight = new Semaphore(config.getMaxInFlight());
+        this.idleTimeoutNanos = config.getIdleTimeout().toNanos();
+        this.nextSweepNanos = new AtomicLong(System.nanoTime() + idleTimeoutNanos);
+        meterRegistry.gauge("collector.admission.in-flight", inFlight,
+                semaphore -> config.getMaxInFlight() - semaphore.availablePermits());
+    }
+
+    public CompletableFuture<Void> admit(String hubId, Supplier<CompletableFuture<Void>> work) {
+        if (!config.isEnabled()) {
+            return work.get();
+        }
+        long now = System.nanoTime();
+        HubLimits limits = hubs.computeIfAbsent(hubId, this::createLimits);
+        limits.lastSeenNanos = now;
+        sweepIdle(now);
+
+        long waitNanos = limits.bucket.tryAcquire(now);
+        if (waitNanos > 0) {
+            limits.shedByRate.increment();
+            long retryAfterMillis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(waitNanos));
+            return CompletableFuture.failedFuture(new AdmissionRejectedException(
+                    "Превышена частота событий хаба " + hubId, retryAfterMillis));
+        }
+        if (!inFlight.tryAcquire()) {
+            limits.shedByInFlight.increment();
+            return CompletableFuture.failedFuture(new AdmissionRejectedException(
+                    "Коллектор перегружен, событие хаба " + hubId + " отклонено", IN_FLIGHT_RETRY_AFTER_MILLIS));
+        }
+        limits.admitted.increment();
+
+        CompletableFuture<Void> result;
+        try {
+            result = work.get();
+        } catch (RuntimeException e) {
+            inFlight.release();
+            throw e;
+        }
+        return result.whenComplete((ignored, e) -> inFlight.release());
+    }
+
+    /**
+     * Не чаще раза в {@code idle-timeout} удаляет молчащие хабы вместе с их метриками.
+     * Проход выполняет один поток, выигравший CAS, остальные не ждут.
+     */
+    private void sweepIdle(long now) {
+        long next = nextSweepNanos.get();
+        if (now - next < 0 || !nextSweepNanos.compareAndSet(next, now + idleTimeoutNanos)) {
+            return;
+        }
+        hubs.forEach((hubId, limits) -> {
+            if (now - limits.lastSeenNanos >= idleTimeoutNanos && hubs.remove(hubId, limits)) {
+                meterRegistry.remove(limits.admitted);
+                meterRegistry.remove(limits.shedByRate);
+                meterRegistry.remove(limits.shedByInFlight);
+                log.debug("Удалены лимиты молчащего хаба {}", hubId);
+            }
+        });
+    }
+
+    private HubLimits createLimits(String hubId) {
+        log.debug("Создаём лимиты для хаба {}", hubId);
+        return new HubLimits(
+                new TokenBucket(config.getEventsPerSecondPerHub(), config.getBurstPerHub(), System.nanoTime()),
+                Counter.builder("collector.admission.admitted").tag("hub", hubId).register(meterRegistry),
+                Counter.builder("collector.admission.shed").tag("hub", hubId).tag("reason", "rate")
+                        .register(meterRegistry),
+                Counter.builder("collector.admission.shed").tag("hub", hubId).tag("reason", "in-flight")
+                        .register(meterRegistry));
+    }
+
+    private static final class HubLimits {
+        private final TokenBucket bucket;
+        private final Counter admitted;
+        private final Counter shedByRate;
+        private final Counter shedByInFlight;
+        private volatile long lastSeenNanos;
+
+        private HubLimits(TokenBucket bucket, Counter admitted, Counter shedByRate, Counter shedByInFlight) {
+            this.bucket = bucket;
+            this.admitted = admitted;
+            this.shedByRate = shedByRate;
+            this.shedByInFlight = shedByInFlight;
+        }
+    }
+}
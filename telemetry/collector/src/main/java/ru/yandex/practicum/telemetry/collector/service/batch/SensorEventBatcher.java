@@ -0,0 +1,187 @@
+package ru.yandex.practicum.telemetry.collector.service.batch;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import kafka.serializer.TelemetryHeaders;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.avro.specific.SpecificRecordBase;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.internals.RecordHeader;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.grpc.telemetry.event.SensorEventProto;
+import ru.yandex.practicum.kafka.telemetry.event.SensorEventAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SensorEventBatchAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SensorReadingAvro;
+import ru.yandex.practicum.telemetry.collector.KafkaEventProducer;
+import ru.yandex.practicum.telemetry.collector.configuration.BatchingConfig;
+import ru.yandex.practicum.telemetry.collector.service.suppression.ChangeSuppressor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Собирает показания датчиков одного хаба в {@link SensorEventBatchAvro} и отправляет
+ * пакет одной записью Kafka, когда в нём набралось {@code max-readings} показаний или
+ * первое из них ждёт дольше {@code linger}. Метки времени показаний хранятся смещением
+ * от самой ранней метки пакета. Результат каждого показания завершается вместе с
+ * подтверждением записи пакета.
+ */
+@Slf4j
+@Component
+public class SensorEventBatcher {
+    private static final List<Header> BATCH_HEADERS =
+            List.of(new RecordHeader(TelemetryHeaders.FORMAT, TelemetryHeaders.SENSOR_EVENT_BATCH));
+
+    private final BatchingConfig config;
+    private final KafkaEventProducer producer;
+    private final ChangeSuppressor suppressor;
+    private final Map<String, PendingBatch> pending = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService flusher;
+    private final Counter batches;
+    private final Counter readings;
+
+    public SensorEventBatcher(BatchingConfig config, KafkaEventProducer producer, ChangeSuppressor suppressor,
+                              MeterRegistry meterRegistry) {
+        this.config = config;
+        this.producer = producer;
+        this.suppressor = suppressor;
+        this.batches = meterRegistry.counter("collector.batching.batches");
+        this.readings = meterRegistry.counter("collector.batching.readings");
+        if (config.isEnabled()) {
+            long interval = Math.max(1, config.getLinger().toMillis() / 2);
+            this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "collector-batch-flusher");
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.flusher.scheduleWithFixedDelay(this::flushDue, interval, interval, TimeUnit.MILLISECONDS);
+        } else {
+            this.flusher = null;
+        }
+    }
+
+    public boolean isEnabled() {
+        return config.isEnabled();
+    }
+
+    /**
+     * Добавляет показание в пакет его хаба. {@code source} нужен подавителю повторов,
+     * {@code event} — уже преобразованное показание с меткой времени в миллисекундах.
+     */
+    public CompletableFuture<Void> add(SensorEventProto source, SensorEventAvro event) {
+        if (!suppressor.shouldForward(source, event.getTimestamp())) {
+            log.debug("Sensor event {} of hub {} unchanged, not sent", event.getId(), event.getHubId());
+            return CompletableFuture.completedFuture(null);
+        }
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        result.whenComplete((ignored, e) -> {
+            if (e == null) {
+                suppressor.acknowledged(source, event.getTimestamp());
+            }
+        });
+        PendingBatch[] ready = new PendingBatch[1];
+        pending.compute(event.getHubId(), (hubId, batch) -> {
+            PendingBatch target = batch != null ? batch : new PendingBatch(System.nanoTime());
+            target.events.add(event);
+            target.results.add(result);
+            if (target.events.size() >= config.getMaxReadings()) {
+                ready[0] = target;
+                return null;
+            }
+            return target;
+        });
+        if (ready[0] != null) {
+            send(event.getHubId(), ready[0]);
+        }
+        return result;
+    }
+
+    private void flushDue() {
+        long deadline = System.nanoTime() - config.getLinger().toNanos();
+        for (String hubId : pending.keySet()) {
+            flush(hubId, false, deadline);
+        }
+    }
+
+    private void flush(String hubId, boolean force, long startedBefore) {
+        PendingBatch[] ready = new PendingBatch[1];
+        pending.computeIfPresent(hubId, (id, batch) -> {
+            if (!force && batch.startedNanos - startedBefore > 0) {
+                return batch;
+            }
+            ready[0] = batch;
+            return null;
+        });
+        if (ready[0] != null) {
+            send(hubId, ready[0]);
+        }
+    }
+
+    private void send(String hubId, PendingBatch batch) {
+        try {
+            long base = Long.MAX_VALUE;
+            for (SensorEventAvro event : batch.events) {
+                base = Math.min(base, event.getTimestamp());
+            }
+            List<SensorReadingAvro> batchReadings = new ArrayList<>(batch.events.size());
+            for (SensorEventAvro event : batch.events) {
+                batchReadings.add(SensorReadingAvro.newBuilder()
+                        .setId(event.getId())
+                        .setTimestampDelta(event.getTimestamp() - base)
+                        .setPayload(event.getPayload())
+                        .build());
+            }
+            SensorEventBatchAvro value = SensorEventBatchAvro.newBuilder()
+                    .setHubId(hubId)
+                    .setBaseTimestamp(base)
+                    .setReadings(batchReadings)
+                    .build();
+            String topic = producer.getConfig().getTopics().get("telemetry-sensors");
+            batches.increment();
+            readings.increment(batchReadings.size());
+            producer.sendRecord(new ProducerRecord<String, SpecificRecordBase>(topic, null, base, hubId, value,
+                            BATCH_HEADERS))
+                    .whenComplete((metadata, e) -> batch.complete(e));
+        } catch (Exception e) {
+            batch.complete(e);
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        if (flusher != null) {
+            flusher.shutdown();
+        }
+        for (String hubId : pending.keySet()) {
+            flush(hubId, true, 0);
+        }
+    }
+
+    private static final class PendingBatch {
+        private final long startedNanos;
+        private final List<SensorEventAvro> events = new ArrayList<>();
+        private final List<CompletableFuture<Void>> results = new ArrayList<>();
+
+        private PendingBatch(long startedNanos) {
+            this.startedNanos = startedNanos;
+        }
+
+        private void complete(Throwable error) {
+            for (CompletableFuture<Void> result : results) {
+                if (error == null) {
+                    result.complete(null);
+                } else {
+                    result.completeExceptionally(error);
+                }
+            }
+        }
+    }
+}
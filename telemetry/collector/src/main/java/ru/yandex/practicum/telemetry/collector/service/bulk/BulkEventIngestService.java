@@ -0,0 +1,186 @@
+package ru.yandex.practicum.telemetry.collector.service.bulk;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.Validator;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.springframework.stereotype.Service;
+import ru.yandex.practicum.telemetry.collector.KafkaEventProducer;
+import ru.yandex.practicum.telemetry.collector.configuration.BulkIngestConfig;
+import ru.yandex.practicum.telemetry.collector.model.BulkIngestResult;
+import ru.yandex.practicum.telemetry.collector.model.hub.HubEvent;
+import ru.yandex.practicum.telemetry.collector.model.sensor.SensorEvent;
+import ru.yandex.practicum.telemetry.collector.service.admission.AdmissionLimiter;
+import ru.yandex.practicum.telemetry.collector.service.mapper.JsonEventMapper;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Потоковая загрузка событий в формате NDJSON: события читаются построчно, по одному,
+ * отправляются в Kafka асинхронно, а число неподтверждённых отправок на один
+ * запрос ограничено, поэтому память не зависит от размера загрузки. Строка с некорректным
+ * JSON или событием отклоняется и не мешает разбору следующих; строка длиннее
+ * {@code max-line-length} отклоняется без буферизации: её остаток пропускается до перевода строки.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class BulkEventIngestService {
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    private final KafkaEventProducer producer;
+    private final JsonEventMapper mapper;
+    private final AdmissionLimiter admissionLimiter;
+    private final BulkIngestConfig config;
+
+    public BulkIngestResult ingestSensorEvents(InputStream input) throws IOException {
+        return ingest(input, SensorEvent.class, SensorEvent::getHubId, this::sendSensorEvent);
+    }
+
+    public BulkIngestResult ingestHubEvents(InputStream input) throws IOException {
+        return ingest(input, HubEvent.class, HubEvent::getHubId, this::sendHubEvent);
+    }
+
+    private <T> BulkIngestResult ingest(InputStream input,
+                                        Class<T> type,
+                                        Function<T, String> hubIdOf,
+                                        Function<T, CompletableFuture<Void>> sender) throws IOException {
+        int window = config.getMaxInFlightPerRequest();
+        Semaphore inFlight = new Semaphore(window);
+        AtomicLong accepted = new AtomicLong();
+        AtomicLong failed = new AtomicLong();
+        long rejected = 0;
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+            LineReader lines = new LineReader(reader, config.getMaxLineLength());
+            int line = 0;
+            String text;
+            while ((text = lines.next()) != null) {
+                line++;
+                if (lines.isTooLong()) {
+                    log.warn("Строка {}: длиннее {} символов, пропущена", line, config.getMaxLineLength());
+                    rejected++;
+                    continue;
+                }
+                if (text.isBlank()) {
+                    continue;
+                }
+                T event;
+                try {
+                    event = objectMapper.readValue(text, type);
+                } catch (JsonProcessingException | IllegalArgumentException e) {
+                    log.warn("Строка {}: не удалось разобрать событие: {}", line, e.getMessage());
+                    rejected++;
+                    continue;
+                }
+                if (!validator.validate(event).isEmpty()) {
+                    log.warn("Строка {}: событие не прошло валидацию", line);
+                    rejected++;
+                    continue;
+                }
+
+                inFlight.acquire();
+                CompletableFuture<Void> result;
+                try {
+                    result = admissionLimiter.admit(hubIdOf.apply(event), () -> sender.apply(event));
+                } catch (RuntimeException e) {
+                    result = CompletableFuture.failedFuture(e);
+                }
+                result.whenComplete((ignored, e) -> {
+                    if (e == null) {
+                        accepted.incrementAndGet();
+                    } else {
+                        failed.incrementAndGet();
+                    }
+                    inFlight.release();
+                });
+            }
+            inFlight.acquire(window);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Загрузка событий прервана");
+        }
+
+        BulkIngestResult result = new BulkIngestResult(accepted.get(), rejected, failed.get());
+        log.info("Пакетная загрузка {} завершена: {}", type.getSimpleName(), result);
+        return result;
+    }
+
+    private CompletableFuture<Void> sendSensorEvent(SensorEvent event) {
+        return producer.sendRecord(new ProducerRecord<>(
+                        producer.getConfig().getTopics().get("telemetry-sensors"),
+                        null,
+                        mapper.timestampOf(event.getTimestamp()),
+                        event.getHubId(),
+                        mapper.toAvro(event)))
+                .thenAccept(metadata -> log.debug("Sensor event {} stored at {}", event.getId(), metadata));
+    }
+
+    private CompletableFuture<Void> sendHubEvent(HubEvent event) {
+        return producer.sendRecord(new ProducerRecord<>(
+                        producer.getConfig().getTopics().get("telemetry-hubs"),
+                        null,
+                        mapper.timestampOf(event.getTimestamp()),
+                        event.getHubId(),
+                        mapper.toAvro(event)))
+                .thenAccept(metadata -> log.debug("Hub event of {} stored at {}", event.getHubId(), metadata));
+    }
+
+    /**
+     * Построчное чтение с ограничением длины: остаток слишком длинной строки
+     * пропускается до перевода строки, не попадая в память.
+     */
+    private static final class LineReader {
+        private final BufferedReader reader;
+        private final int maxLength;
+        private final StringBuilder buffer = new StringBuilder();
+        private boolean tooLong;
+
+        private LineReader(BufferedReader reader, int maxLength) {
+            this.reader = reader;
+            this.maxLength = maxLength;
+        }
+
+        /**
+         * Следующая строка или {@code null} в конце потока; для слишком длинной строки
+         * возвращается пустая строка и {@link #isTooLong()} становится {@code true}.
+         */
+        String next() throws IOException {
+            buffer.setLength(0);
+            tooLong = false;
+            int c;
+            while ((c = reader.read()) != -1 && c != '\n') {
+                if (buffer.length() == maxLength) {
+                    tooLong = true;
+                    buffer.setLength(0);
+                }
+                if (!tooLong) {
+                    buffer.append((char) c);
+                }
+            }
+            if (c == -1 && buffer.isEmpty() && !tooLong) {
+                return null;
+            }
+            int length = buffer.length();
+            if (length > 0 && buffer.charAt(length - 1) == '\r') {
+                buffer.setLength(length - 1);
+            }
+            return buffer.toString();
+        }
+
+        boolean isTooLong() {
+            return tooLong;
+        }
+    }
+}
@@ -1,17 +1,61 @@
 package ru.yandex.practicum.telemetry.collector.service.handler;
 
+import io.grpc.Metadata;
 import io.grpc.Status;
 import io.grpc.StatusRuntimeException;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.producer.BufferExhaustedException;
+import org.apache.kafka.common.errors.RetriableException;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
+import ru.yandex.practicum.telemetry.collector.model.exception.AdmissionRejectedException;
 import ru.yandex.practicum.telemetry.collector.model.exception.ApiError;
+import ru.yandex.practicum.telemetry.collector.model.exception.InFlightLimitExceededException;
+
+import java.util.concurrent.CompletionException;
 
 @Slf4j
 @RestControllerAdvice
 public class ErrorHandler {
+    /**
+     * Стандартный trailer gRPC retry pushback: клиент с retry policy
+     * повторит вызов не раньше указанного числа миллисекунд.
+     */
+    public static final Metadata.Key<String> RETRY_AFTER_MILLIS =
+            Metadata.Key.of("grpc-retry-pushback-ms", Metadata.ASCII_STRING_MARSHALLER);
 
     public StatusRuntimeException handleException(final Exception e) {
         log.warn("Error", e);
         return new StatusRuntimeException(Status.INTERNAL.withDescription(new ApiError("Error", e.getMessage()).toString()));
     }
+
+    public StatusRuntimeException handleAsyncException(final Throwable throwable) {
+        Throwable e = throwable instanceof CompletionException && throwable.getCause() != null
+                ? throwable.getCause()
+                : throwable;
+        if (e instanceof StatusRuntimeException statusException) {
+            return statusException;
+        }
+        if (e instanceof AdmissionRejectedException rejected) {
+            log.debug("Rejected: {}", rejected.getMessage());
+            Metadata trailers = new Metadata();
+            trailers.put(RETRY_AFTER_MILLIS, Long.toString(rejected.getRetryAfterMillis()));
+            return new StatusRuntimeException(Status.RESOURCE_EXHAUSTED
+                    .withDescription(new ApiError(Status.Code.RESOURCE_EXHAUSTED.name(), e.getMessage()).toString()),
+                    trailers);
+        }
+        Status status;
+        if (e instanceof InFlightLimitExceededException || e instanceof BufferExhaustedException) {
+            status = Status.RESOURCE_EXHAUSTED;
+        } else if (e instanceof RetriableException) {
+            status = Status.UNAVAILABLE;
+        } else if (e instanceof IllegalArgumentException) {
+            status = Status.INVALID_ARGUMENT;
+        } else {
+            status = Status.INTERNAL;
+        }
+        log.warn("Error", e);
+        return new StatusRuntimeException(status
+                .withDescription(new ApiError(status.getCode().name(), e.getMessage()).toString())
+                .withCause(e));
+    }
 }
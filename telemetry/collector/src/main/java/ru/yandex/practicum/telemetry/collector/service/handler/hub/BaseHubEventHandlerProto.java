@@ -5,8 +5,10 @@ import lombok.extern.slf4j.Slf4j;
 import ru.yandex.practicum.kafka.telemetry.event.HubEventAvro;
 import ru.yandex.practicum.telemetry.collector.KafkaEventProducer;
 import ru.yandex.practicum.grpc.telemetry.event.HubEventProto;
+import ru.yandex.practicum.telemetry.collector.service.mapper.EventTimestamps;
 
 import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
 
 @Slf4j
 @RequiredArgsConstructor
@@ -18,28 +20,20 @@ public abstract class BaseHubEventHandlerProto implements HubEventHandlerProto {
     }
 
     @Override
-    public void handle(HubEventProto event) {
+    public CompletableFuture<Void> handle(HubEventProto event) {
         HubEventAvro avroEvent = toAvro(event);
-        producer.sendRecord(new org.apache.kafka.clients.producer.ProducerRecord<>(
+        return producer.sendRecord(new org.apache.kafka.clients.producer.ProducerRecord<>(
                 topic(),
                 null,
                 mapTimestampToInstant(event).toEpochMilli(),
                 event.getHubId(),
-                avroEvent));
+                avroEvent))
+                .thenAccept(metadata -> log.debug("Hub event of {} stored at {}", event.getHubId(), metadata));
     }
 
     protected Instant mapTimestampToInstant(HubEventProto event) {
-        if (!event.hasTimestamp() || event.getTimestamp().getSeconds() <= 0) {
-            log.warn("Invalid or missing timestamp in HubEventProto, using current time");
-            return Instant.now();
-        }
-        Instant timestamp = Instant.ofEpochSecond(event.getTimestamp().getSeconds(), event.getTimestamp().getNanos());
-
-        if (timestamp.isAfter(Instant.parse("2030-01-01T00:00:00Z"))) {
-            log.warn("Timestamp too far in future: {}, using current time", timestamp);
-            return Instant.now();
-        }
-        return timestamp;
+        return Instant.ofEpochMilli(EventTimestamps.epochMilli(
+                event.hasTimestamp() ? event.getTimestamp().getSeconds() : 0, event.getTimestamp().getNanos()));
     }
 
     public abstract HubEventAvro toAvro(HubEventProto hubEvent);
@@ -2,7 +2,9 @@ package ru.yandex.practicum.telemetry.collector.service.handler.hub;
 
 import ru.yandex.practicum.grpc.telemetry.event.HubEventProto;
 
+import java.util.concurrent.CompletableFuture;
+
 public interface HubEventHandlerProto {
     HubEventProto.PayloadCase getMessageType();
-    void handle(HubEventProto event);
+    CompletableFuture<Void> handle(HubEventProto event);
 }
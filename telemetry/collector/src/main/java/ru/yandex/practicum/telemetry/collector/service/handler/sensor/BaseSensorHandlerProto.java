@@ -1,47 +1,70 @@
 package ru.yandex.practicum.telemetry.collector.service.handler.sensor;
 
+import com.google.protobuf.Timestamp;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
 import ru.yandex.practicum.kafka.telemetry.event.SensorEventAvro;
 import ru.yandex.practicum.telemetry.collector.KafkaEventProducer;
 import ru.yandex.practicum.grpc.telemetry.event.SensorEventProto;
+import ru.yandex.practicum.telemetry.collector.service.mapper.EventTimestamps;
+import ru.yandex.practicum.telemetry.collector.service.suppression.ChangeSuppressor;
+import ru.yandex.practicum.telemetry.collector.service.transcoder.SensorEventAvroTranscoder;
 
 import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
 
 @Slf4j
 @RequiredArgsConstructor
 public abstract class BaseSensorHandlerProto implements SensorEventHandlerProto {
     private final KafkaEventProducer producer;
+    private final SensorEventAvroTranscoder transcoder;
+    private final ChangeSuppressor suppressor;
 
     protected String topic() {
         return producer.getConfig().getTopics().get("telemetry-sensors");
     }
 
     @Override
-    public void handle(SensorEventProto event) {
-        SensorEventAvro sensorEventAvro = toAvro(event);
-        log.info("Send {}", sensorEventAvro);
-        producer.sendRecord(new org.apache.kafka.clients.producer.ProducerRecord<>(
+    public CompletableFuture<Void> handle(SensorEventProto event) {
+        long timestamp = mapTimestampToEpochMilli(event);
+        if (!suppressor.shouldForward(event, timestamp)) {
+            log.debug("Sensor event {} of hub {} unchanged, not sent", event.getId(), event.getHubId());
+            return CompletableFuture.completedFuture(null);
+        }
+        return send(event, timestamp)
+                .whenComplete((metadata, e) -> {
+                    if (e == null) {
+                        suppressor.acknowledged(event, timestamp);
+                    }
+                })
+                .thenAccept(metadata -> log.debug("Sensor event {} stored at {}", event.getId(), metadata));
+    }
+
+    private CompletableFuture<RecordMetadata> send(SensorEventProto event, long timestamp) {
+        if (!producer.getConfig().isDirectTranscoding()) {
+            SensorEventAvro sensorEventAvro = toAvro(event);
+            log.info("Send {}", sensorEventAvro);
+            return producer.sendRecord(new ProducerRecord<>(topic(), null, timestamp, event.getHubId(), sensorEventAvro));
+        }
+        log.debug("Send sensor event {} of hub {}", event.getId(), event.getHubId());
+        return producer.sendBytes(new ProducerRecord<>(
                 topic(),
                 null,
-                mapTimestampToInstant(event).toEpochMilli(),
+                timestamp,
                 event.getHubId(),
-                sensorEventAvro));
+                transcoder.encode(event, timestamp)));
     }
 
     protected Instant mapTimestampToInstant(SensorEventProto event) {
-        if (!event.hasTimestamp() || event.getTimestamp().getSeconds() <= 0) {
-            log.warn("Invalid or missing timestamp in SensorEventProto, using current time");
-            return Instant.now();
-        }
-        Instant timestamp = Instant.ofEpochSecond(event.getTimestamp().getSeconds(), event.getTimestamp().getNanos());
+        return Instant.ofEpochMilli(mapTimestampToEpochMilli(event));
+    }
 
-        if (timestamp.isAfter(Instant.parse("2030-01-01T00:00:00Z"))) {
-            log.warn("Timestamp too far in future: {}, using current time", timestamp);
-            return Instant.now();
-        }
-        return timestamp;
+    protected long mapTimestampToEpochMilli(SensorEventProto event) {
+        Timestamp timestamp = event.getTimestamp();
+        return EventTimestamps.epochMilli(event.hasTimestamp() ? timestamp.getSeconds() : 0, timestamp.getNanos());
     }
 
     public abstract SensorEventAvro toAvro(SensorEventProto sensorEvent);
-}
\ No newline at end of file
+}
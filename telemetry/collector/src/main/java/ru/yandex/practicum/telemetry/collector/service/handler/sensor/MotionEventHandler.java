@@ -6,11 +6,15 @@ import ru.yandex.practicum.kafka.telemetry.event.SensorEventAvro;
 import ru.yandex.practicum.telemetry.collector.KafkaEventProducer;
 import ru.yandex.practicum.grpc.telemetry.event.MotionSensorProto;
 import ru.yandex.practicum.grpc.telemetry.event.SensorEventProto;
+import ru.yandex.practicum.telemetry.collector.service.suppression.ChangeSuppressor;
+import ru.yandex.practicum.telemetry.collector.service.transcoder.SensorEventAvroTranscoder;
 
 @Component
 public class MotionEventHandler extends BaseSensorHandlerProto {
-    public MotionEventHandler(KafkaEventProducer producer) {
-        super(producer);
+    public MotionEventHandler(KafkaEventProducer producer,
+                              SensorEventAvroTranscoder transcoder,
+                              ChangeSuppressor suppressor) {
+        super(producer, transcoder, suppressor);
     }
 
     @Override
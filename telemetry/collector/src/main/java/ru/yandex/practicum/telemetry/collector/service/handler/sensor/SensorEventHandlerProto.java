@@ -1,8 +1,12 @@
 package ru.yandex.practicum.telemetry.collector.service.handler.sensor;
 
 import ru.yandex.practicum.grpc.telemetry.event.SensorEventProto;
+import ru.yandex.practicum.kafka.telemetry.event.SensorEventAvro;
+
+import java.util.concurrent.CompletableFuture;
 
 public interface SensorEventHandlerProto {
     SensorEventProto.PayloadCase getMessageType();
-    void handle(SensorEventProto event);
+    CompletableFuture<Void> handle(SensorEventProto event);
+    SensorEventAvro toAvro(SensorEventProto sensorEvent);
 }
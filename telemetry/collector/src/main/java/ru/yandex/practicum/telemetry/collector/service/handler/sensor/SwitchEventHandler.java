@@ -5,12 +5,16 @@ import ru.yandex.practicum.kafka.telemetry.event.SensorEventAvro;
 import ru.yandex.practicum.kafka.telemetry.event.SwitchSensorAvro;
 import ru.yandex.practicum.telemetry.collector.KafkaEventProducer;
 import ru.yandex.practicum.grpc.telemetry.event.SensorEventProto;
+import ru.yandex.practicum.telemetry.collector.service.suppression.ChangeSuppressor;
+import ru.yandex.practicum.telemetry.collector.service.transcoder.SensorEventAvroTranscoder;
 import ru.yandex.practicum.grpc.telemetry.event.SwitchSensorProto;
 
 @Component
 public class SwitchEventHandler extends BaseSensorHandlerProto {
-    public SwitchEventHandler(KafkaEventProducer producer) {
-        super(producer);
+    public SwitchEventHandler(KafkaEventProducer producer,
+                              SensorEventAvroTranscoder transcoder,
+                              ChangeSuppressor suppressor) {
+        super(producer, transcoder, suppressor);
     }
 
     @Override
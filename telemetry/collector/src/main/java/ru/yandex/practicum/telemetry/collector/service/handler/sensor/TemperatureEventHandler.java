@@ -5,12 +5,16 @@ import ru.yandex.practicum.kafka.telemetry.event.SensorEventAvro;
 import ru.yandex.practicum.kafka.telemetry.event.TemperatureSensorAvro;
 import ru.yandex.practicum.telemetry.collector.KafkaEventProducer;
 import ru.yandex.practicum.grpc.telemetry.event.SensorEventProto;
+import ru.yandex.practicum.telemetry.collector.service.suppression.ChangeSuppressor;
+import ru.yandex.practicum.telemetry.collector.service.transcoder.SensorEventAvroTranscoder;
 import ru.yandex.practicum.grpc.telemetry.event.TemperatureSensorProto;
 
 @Component
 public class TemperatureEventHandler extends BaseSensorHandlerProto {
-    public TemperatureEventHandler(KafkaEventProducer producer) {
-        super(producer);
+    public TemperatureEventHandler(KafkaEventProducer producer,
+                                   SensorEventAvroTranscoder transcoder,
+                                   ChangeSuppressor suppressor) {
+        super(producer, transcoder, suppressor);
     }
 
     @Override
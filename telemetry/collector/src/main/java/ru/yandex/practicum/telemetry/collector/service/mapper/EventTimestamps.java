@@ -0,0 +1,36 @@
+package ru.yandex.practicum.telemetry.collector.service.mapper;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Instant;
+
+/**
+ * Проверка метки времени события, общая для gRPC-обработчиков и пакетной загрузки:
+ * отсутствующая, неположительная или слишком далёкая в будущем метка заменяется текущим временем.
+ */
+@Slf4j
+public final class EventTimestamps {
+    private static final long MAX_EPOCH_SECOND = Instant.parse("2030-01-01T00:00:00Z").getEpochSecond();
+
+    private EventTimestamps() {
+    }
+
+    public static long epochMilli(Instant timestamp) {
+        return timestamp != null ? epochMilli(timestamp.getEpochSecond(), timestamp.getNano()) : epochMilli(0, 0);
+    }
+
+    /**
+     * Метка времени в миллисекундах; {@code seconds <= 0} означает отсутствующую метку.
+     */
+    public static long epochMilli(long seconds, int nanos) {
+        if (seconds <= 0) {
+            log.warn("Invalid or missing event timestamp, using current time");
+            return System.currentTimeMillis();
+        }
+        if (seconds > MAX_EPOCH_SECOND || (seconds == MAX_EPOCH_SECOND && nanos > 0)) {
+            log.warn("Timestamp too far in future: {}s, using current time", seconds);
+            return System.currentTimeMillis();
+        }
+        return seconds * 1000 + nanos / 1_000_000;
+    }
+}
@@ -0,0 +1,135 @@
+package ru.yandex.practicum.telemetry.collector.service.mapper;
+
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.kafka.telemetry.event.*;
+import ru.yandex.practicum.telemetry.collector.model.hub.DeviceAction;
+import ru.yandex.practicum.telemetry.collector.model.hub.DeviceAddedEvent;
+import ru.yandex.practicum.telemetry.collector.model.hub.DeviceRemovedEvent;
+import ru.yandex.practicum.telemetry.collector.model.hub.HubEvent;
+import ru.yandex.practicum.telemetry.collector.model.hub.ScenarioAddedEvent;
+import ru.yandex.practicum.telemetry.collector.model.hub.ScenarioCondition;
+import ru.yandex.practicum.telemetry.collector.model.hub.ScenarioRemovedEvent;
+import ru.yandex.practicum.telemetry.collector.model.sensor.ClimateSensorEvent;
+import ru.yandex.practicum.telemetry.collector.model.sensor.LightSensorEvent;
+import ru.yandex.practicum.telemetry.collector.model.sensor.MotionSensorEvent;
+import ru.yandex.practicum.telemetry.collector.model.sensor.SensorEvent;
+import ru.yandex.practicum.telemetry.collector.model.sensor.SwitchSensorEvent;
+import ru.yandex.practicum.telemetry.collector.model.sensor.TemperatureSensorEvent;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Переводит JSON-модель коллектора ({@link SensorEvent}, {@link HubEvent}) в те же
+ * Avro-записи, что формируют gRPC-обработчики.
+ */
+@Component
+public class JsonEventMapper {
+
+    /**
+     * Метка времени события по тем же правилам, что и в gRPC-обработчиках ({@link EventTimestamps}).
+     */
+    public long timestampOf(Instant timestamp) {
+        return EventTimestamps.epochMilli(timestamp);
+    }
+
+    public SensorEventAvro toAvro(SensorEvent event) {
+        return SensorEventAvro.newBuilder()
+                .setId(event.getId())
+                .setHubId(event.getHubId())
+                .setTimestamp(timestampOf(event.getTimestamp()))
+                .setPayload(mapSensorPayload(event))
+                .build();
+    }
+
+    public HubEventAvro toAvro(HubEvent event) {
+        return HubEventAvro.newBuilder()
+                .setHubId(event.getHubId())
+                .setTimestamp(timestampOf(event.getTimestamp()))
+                .setPayload(mapHubPayload(event))
+                .build();
+    }
+
+    private Object mapSensorPayload(SensorEvent event) {
+        return switch (event.getType()) {
+            case CLIMATE_SENSOR_EVENT -> {
+                ClimateSensorEvent climate = (ClimateSensorEvent) event;
+                yield ClimateSensorAvro.newBuilder()
+                        .setTemperatureC(climate.getTemperatureC())
+                        .setHumidity(climate.getHumidity())
+                        .setCo2Level(climate.getCo2Level())
+                        .build();
+            }
+            case LIGHT_SENSOR_EVENT -> {
+                LightSensorEvent light = (LightSensorEvent) event;
+                yield LightSensorAvro.newBuilder()
+                        .setLinkQuality(light.getLinkQuality())
+                        .setLuminosity(light.getLuminosity())
+                        .build();
+            }
+            case MOTION_SENSOR_EVENT -> {
+                MotionSensorEvent motion = (MotionSensorEvent) event;
+                yield MotionSensorAvro.newBuilder()
+                        .setMotion(motion.isMotion())
+                        .setLinkQuality(motion.getLinkQuality())
+                        .setVoltage(motion.getVoltage())
+                        .build();
+            }
+            case SWITCH_SENSOR_EVENT -> SwitchSensorAvro.newBuilder()
+                    .setState(((SwitchSensorEvent) event).isState())
+                    .build();
+            case TEMPERATURE_SENSOR_EVENT -> {
+                TemperatureSensorEvent temperature = (TemperatureSensorEvent) event;
+                yield TemperatureSensorAvro.newBuilder()
+                        .setTemperatureC(temperature.getTemperatureC())
+                        .setTemperatureF(temperature.getTemperatureF())
+                        .build();
+            }
+        };
+    }
+
+    private Object mapHubPayload(HubEvent event) {
+        return switch (event.getType()) {
+            case DEVICE_ADDED -> {
+                DeviceAddedEvent deviceAdded = (DeviceAddedEvent) event;
+                yield new DeviceAddedEventAvro(deviceAdded.getId(),
+                        DeviceTypeAvro.valueOf(deviceAdded.getDeviceType().name()));
+            }
+            case DEVICE_REMOVED -> new DeviceRemovedEventAvro(((DeviceRemovedEvent) event).getId());
+            case SCENARIO_ADDED -> {
+                ScenarioAddedEvent scenarioAdded = (ScenarioAddedEvent) event;
+                yield new ScenarioAddedEventAvro(scenarioAdded.getName(),
+                        mapConditions(scenarioAdded.getConditions()),
+                        mapActions(scenarioAdded.getActions()));
+            }
+            case SCENARIO_REMOVED -> new ScenarioRemovedEventAvro(((ScenarioRemovedEvent) event).getName());
+        };
+    }
+
+    private List<ScenarioConditionAvro> mapConditions(List<ScenarioCondition> conditions) {
+        if (conditions == null) {
+            return List.of();
+        }
+        return conditions.stream()
+                .map(c -> ScenarioConditionAvro.newBuilder()
+                        .setSensorId(c.getSensorId())
+                        .setType(ConditionTypeAvro.valueOf(c.getType().name()))
+                        .setOperation(ConditionOperationAvro.valueOf(c.getOperation().name()))
+                        .setValue(c.getValue())
+                        .build())
+                .toList();
+    }
+
+    private List<DeviceActionAvro> mapActions(List<DeviceAction> actions) {
+        if (actions == null) {
+            return List.of();
+        }
+        return actions.stream()
+                .map(a -> DeviceActionAvro.newBuilder()
+                        .setSensorId(a.getSensorId())
+                        .setType(ActionTypeAvro.valueOf(a.getType().name()))
+                        .setValue(a.getValue())
+                        .build())
+                .toList();
+    }
+}
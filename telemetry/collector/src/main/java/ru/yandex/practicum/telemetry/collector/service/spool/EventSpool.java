@@ -0,0 +1,290 @@
+package ru.yandex.practicum.telemetry.collector.service.spool;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.internals.RecordHeader;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.telemetry.collector.configuration.SpoolConfig;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Ограниченный append-only спул на отображённом в память файле. Коллектор пишет в него
+ * закодированные записи, пока Kafka недоступна, и вычитывает их в исходном порядке,
+ * когда брокер восстановится.
+ * <p>
+ * Формат файла: заголовок из позиций чтения и записи (два long), затем записи вида
+ * {@code [int size][long timestamp][int topicLength][topic][int keyLength][key][int valueLength][value]},
+ * где size — длина записи без самого поля size. Если у записи есть заголовки Kafka, за значением
+ * следуют {@code [int count]} и пары {@code [int keyLength][key][int valueLength][value]};
+ * у записи без заголовков после значения ничего нет, её конец определяется по size. Когда спул вычитан полностью, позиции
+ * сбрасываются в начало; если места не хватает, непрочитанный хвост сдвигается в начало.
+ */
+@Slf4j
+@Component
+public class EventSpool {
+    private static final int HEADER_SIZE = 2 * Long.BYTES;
+    private static final int NULL_LENGTH = -1;
+
+    private final SpoolConfig config;
+    private final Counter appended;
+    private final Counter rejected;
+    private final Counter drained;
+
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int capacity;
+    private int readPosition;
+    private int writePosition;
+    private long depth;
+    private boolean dirty;
+    private boolean draining;
+
+    public EventSpool(SpoolConfig config, MeterRegistry meterRegistry) {
+        this.config = config;
+        this.appended = meterRegistry.counter("collector.spool.appended");
+        this.rejected = meterRegistry.counter("collector.spool.rejected");
+        this.drained = meterRegistry.counter("collector.spool.drained");
+        meterRegistry.gauge("collector.spool.depth", this, EventSpool::depth);
+        meterRegistry.gauge("collector.spool.bytes", this, EventSpool::bytes);
+        if (config.isEnabled()) {
+            open();
+        }
+    }
+
+    public boolean isEnabled() {
+        return config.isEnabled();
+    }
+
+    public synchronized boolean isEmpty() {
+        return depth == 0;
+    }
+
+    /**
+     * Решает, куда идёт новая запись: пока спул не пуст или вычитывается, запись сохраняется в него,
+     * чтобы не обогнать ранее сохранённые, иначе её можно отправлять напрямую. Решение принимается
+     * под той же блокировкой, что и {@link #append} и {@link #draining}, поэтому проход
+     * вычитывания не может завершиться между проверкой и записью.
+     */
+    public synchronized Routing route(ProducerRecord<String, byte[]> record) {
+        if (depth == 0 && !draining) {
+            return Routing.DIRECT;
+        }
+        return append(record) ? Routing.SPOOLED : Routing.FULL;
+    }
+
+    /**
+     * Отмечает проход вычитывания: пока его записи не подтверждены, спул считается занятым,
+     * даже если последняя пачка уже удалена.
+     */
+    public synchronized void draining(boolean draining) {
+        this.draining = draining;
+    }
+
+    public synchronized long depth() {
+        return depth;
+    }
+
+    public synchronized long bytes() {
+        return writePosition - readPosition;
+    }
+
+    public synchronized boolean append(ProducerRecord<String, byte[]> record) {
+        byte[] topic = record.topic().getBytes(StandardCharsets.UTF_8);
+        byte[] key = record.key() != null ? record.key().getBytes(StandardCharsets.UTF_8) : null;
+        byte[] value = record.value();
+        Header[] headers = record.headers().toArray();
+        int size = Long.BYTES + 3 * Integer.BYTES + topic.length + length(key) + length(value);
+        if (headers.length > 0) {
+            size += Integer.BYTES;
+            for (Header header : headers) {
+                size += 2 * Integer.BYTES + header.key().getBytes(StandardCharsets.UTF_8).length + length(header.value());
+            }
+        }
+
+        if (!ensureSpace(Integer.BYTES + size)) {
+            rejected.increment();
+            return false;
+        }
+        buffer.position(HEADER_SIZE + writePosition);
+        buffer.putInt(size);
+        buffer.putLong(record.timestamp() != null ? record.timestamp() : System.currentTimeMillis());
+        putBytes(topic);
+        putBytes(key);
+        putBytes(value);
+        if (headers.length > 0) {
+            buffer.putInt(headers.length);
+            for (Header header : headers) {
+                putBytes(header.key().getBytes(StandardCharsets.UTF_8));
+                putBytes(header.value());
+            }
+        }
+        writePosition += Integer.BYTES + size;
+        depth++;
+        writeHeader();
+        appended.increment();
+        return true;
+    }
+
+    /**
+     * Возвращает до {@code limit} самых старых записей, не удаляя их из спула.
+     */
+    public synchronized List<SpooledRecord> peek(int limit) {
+        List<SpooledRecord> records = new ArrayList<>(Math.min(limit, (int) Math.min(depth, Integer.MAX_VALUE)));
+        int position = readPosition;
+        while (records.size() < limit && position < writePosition) {
+            buffer.position(HEADER_SIZE + position);
+            int size = buffer.getInt();
+            long timestamp = buffer.getLong();
+            String topic = new String(getBytes(), StandardCharsets.UTF_8);
+            byte[] key = getBytes();
+            byte[] value = getBytes();
+            List<Header> headers = new ArrayList<>();
+            if (buffer.position() < HEADER_SIZE + position + Integer.BYTES + size) {
+                int count = buffer.getInt();
+                for (int i = 0; i < count; i++) {
+                    headers.add(new RecordHeader(new String(getBytes(), StandardCharsets.UTF_8), getBytes()));
+                }
+            }
+            records.add(new SpooledRecord(topic, timestamp,
+                    key != null ? new String(key, StandardCharsets.UTF_8) : null, value, headers, Integer.BYTES + size));
+            position += Integer.BYTES + size;
+        }
+        return records;
+    }
+
+    /**
+     * Удаляет из головы спула записи, ранее полученные через {@link #peek(int)} и доставленные в Kafka.
+     */
+    public synchronized void remove(List<SpooledRecord> delivered) {
+        for (SpooledRecord record : delivered) {
+            readPosition += record.size();
+            depth--;
+        }
+        if (readPosition >= writePosition) {
+            readPosition = 0;
+            writePosition = 0;
+            depth = 0;
+        }
+        writeHeader();
+        drained.increment(delivered.size());
+    }
+
+    public synchronized void force() {
+        if (buffer != null && dirty) {
+            buffer.force();
+            dirty = false;
+        }
+    }
+
+    @PreDestroy
+    public synchronized void close() throws IOException {
+        if (channel != null) {
+            force();
+            channel.close();
+            channel = null;
+            buffer = null;
+        }
+    }
+
+    private void open() {
+        try {
+            Path path = Path.of(config.getPath());
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+            capacity = (int) Math.min(config.getCapacity().toBytes(), Integer.MAX_VALUE - HEADER_SIZE);
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) capacity);
+            readPosition = (int) buffer.getLong(0);
+            writePosition = (int) buffer.getLong(Long.BYTES);
+            if (readPosition < 0 || writePosition < readPosition || writePosition > capacity) {
+                log.warn("Спул {} повреждён или создан с другим размером, начинаем с пустого", path);
+                readPosition = 0;
+                writePosition = 0;
+                writeHeader();
+            }
+            depth = countRecords();
+            log.info("Открыт спул {}: {} записей, {} байт", path, depth, bytes());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось открыть спул " + config.getPath(), e);
+        }
+    }
+
+    private boolean ensureSpace(int required) {
+        if (buffer == null) {
+            return false;
+        }
+        if (capacity - writePosition >= required) {
+            return true;
+        }
+        if (capacity - (writePosition - readPosition) < required) {
+            return false;
+        }
+        int used = writePosition - readPosition;
+        byte[] tail = new byte[used];
+        buffer.get(HEADER_SIZE + readPosition, tail);
+        buffer.put(HEADER_SIZE, tail);
+        readPosition = 0;
+        writePosition = used;
+        return true;
+    }
+
+    private long countRecords() {
+        long count = 0;
+        int position = readPosition;
+        while (position < writePosition) {
+            position += Integer.BYTES + buffer.getInt(HEADER_SIZE + position);
+            count++;
+        }
+        return count;
+    }
+
+    private void writeHeader() {
+        buffer.putLong(0, readPosition);
+        buffer.putLong(Long.BYTES, writePosition);
+        dirty = true;
+    }
+
+    private void putBytes(byte[] bytes) {
+        if (bytes == null) {
+            buffer.putInt(NULL_LENGTH);
+            return;
+        }
+        buffer.putInt(bytes.length);
+        buffer.put(bytes);
+    }
+
+    private byte[] getBytes() {
+        int length = buffer.getInt();
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    private static int length(byte[] bytes) {
+        return bytes != null ? bytes.length : 0;
+    }
+
+    public enum Routing {
+        DIRECT,
+        SPOOLED,
+        FULL
+    }
+}
@@ -0,0 +1,8 @@
+package ru.yandex.practicum.telemetry.collector.service.spool;
+
+import org.apache.kafka.common.header.Header;
+
+import java.util.List;
+
+public record SpooledRecord(String topic, long timestamp, String key, byte[] value, List<Header> headers, int size) {
+}
@@ -0,0 +1,126 @@
+package ru.yandex.practicum.telemetry.collector.service.suppression;
+
+import com.google.protobuf.Message;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.grpc.telemetry.event.SensorEventProto;
+import ru.yandex.practicum.telemetry.collector.configuration.SuppressionConfig;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Отбрасывает показания датчика, совпадающие с последним отправленным значением,
+ * пока не истечёт {@code max-silence}: после этого повтор уходит в Kafka как heartbeat.
+ * Значение запоминается только после подтверждения отправки брокером, поэтому повтор,
+ * пришедший, пока первая отправка ещё в пути, тоже уходит, и неудачная отправка не
+ * теряет показание. Кэш последних значений разбит на {@value #STRIPES} LRU-сегментов со
+ * своими блокировками, ограничен {@code max-entries} и вытесняет давно не обновлявшиеся датчики.
+ */
+@Component
+public class ChangeSuppressor {
+    private static final int STRIPES = 16;
+
+    private final SuppressionConfig config;
+    private final List<Map<SensorKey, LastValue>> stripes;
+    private final Counter forwarded;
+    private final Counter suppressed;
+    private final Counter suppressedBytes;
+    private final Counter heartbeats;
+
+    public ChangeSuppressor(SuppressionConfig config, MeterRegistry meterRegistry) {
+        this.config = config;
+        int entriesPerStripe = Math.max(1, (config.getMaxEntries() + STRIPES - 1) / STRIPES);
+        this.stripes = new ArrayList<>(STRIPES);
+        for (int i = 0; i < STRIPES; i++) {
+            stripes.add(new LinkedHashMap<>(64, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<SensorKey, LastValue> eldest) {
+                    return size() > entriesPerStripe;
+                }
+            });
+        }
+        this.forwarded = meterRegistry.counter("collector.suppression.forwarded");
+        this.suppressed = meterRegistry.counter("collector.suppression.suppressed");
+        this.suppressedBytes = meterRegistry.counter("collector.suppression.suppressed.bytes");
+        this.heartbeats = meterRegistry.counter("collector.suppression.heartbeats");
+        meterRegistry.gauge("collector.suppression.cache.size", this, ChangeSuppressor::size);
+    }
+
+    public boolean shouldForward(SensorEventProto event, long timestamp) {
+        if (!config.isEnabled()) {
+            return true;
+        }
+        SensorKey key = new SensorKey(event.getHubId(), event.getId());
+        Map<SensorKey, LastValue> stripe = stripeOf(key);
+        LastValue last;
+        synchronized (stripe) {
+            last = stripe.get(key);
+        }
+        if (last != null && last.payload().equals(payloadOf(event))) {
+            long silence = timestamp - last.forwardedAt();
+            if (silence >= 0 && silence < config.getMaxSilence().toMillis()) {
+                suppressed.increment();
+                suppressedBytes.increment(event.getSerializedSize());
+                return false;
+            }
+            heartbeats.increment();
+        }
+        forwarded.increment();
+        return true;
+    }
+
+    /**
+     * Запоминает показание, отправку которого подтвердил брокер: только такие значения
+     * подавляют следующие повторы. Более старое подтверждение не затирает более новое.
+     */
+    public void acknowledged(SensorEventProto event, long timestamp) {
+        if (!config.isEnabled()) {
+            return;
+        }
+        SensorKey key = new SensorKey(event.getHubId(), event.getId());
+        LastValue value = new LastValue(payloadOf(event), timestamp);
+        Map<SensorKey, LastValue> stripe = stripeOf(key);
+        synchronized (stripe) {
+            LastValue last = stripe.get(key);
+            if (last == null || last.forwardedAt() <= timestamp) {
+                stripe.put(key, value);
+            }
+        }
+    }
+
+    private Map<SensorKey, LastValue> stripeOf(SensorKey key) {
+        int hash = key.hashCode();
+        return stripes.get((hash ^ (hash >>> 16)) & (STRIPES - 1));
+    }
+
+    private Message payloadOf(SensorEventProto event) {
+        return switch (event.getPayloadCase()) {
+            case MOTION_SENSOR -> event.getMotionSensor();
+            case TEMPERATURE_SENSOR -> event.getTemperatureSensor();
+            case LIGHT_SENSOR -> event.getLightSensor();
+            case CLIMATE_SENSOR -> event.getClimateSensor();
+            case SWITCH_SENSOR -> event.getSwitchSensor();
+            case PAYLOAD_NOT_SET -> throw new IllegalArgumentException("Событие датчика " + event.getId() + " без показаний");
+        };
+    }
+
+    private int size() {
+        int size = 0;
+        for (Map<SensorKey, LastValue> stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.size();
+            }
+        }
+        return size;
+    }
+
+    private record SensorKey(String hubId, String sensorId) {
+    }
+
+    private record LastValue(Message payload, long forwardedAt) {
+    }
+}
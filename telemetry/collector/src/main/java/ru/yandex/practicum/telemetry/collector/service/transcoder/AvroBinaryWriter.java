@@ -0,0 +1,59 @@
+package ru.yandex.practicum.telemetry.collector.service.transcoder;
+
+import com.google.protobuf.ByteString;
+
+import java.util.Arrays;
+
+/**
+ * Растущий буфер с примитивами бинарного формата Avro (zig-zag varint,
+ * строки с длиной). Переиспользуется между событиями одного потока.
+ */
+class AvroBinaryWriter {
+    private byte[] buffer = new byte[256];
+    private int position;
+
+    void reset() {
+        position = 0;
+    }
+
+    void writeLong(long value) {
+        ensureCapacity(10);
+        long n = (value << 1) ^ (value >> 63);
+        while ((n & ~0x7FL) != 0) {
+            buffer[position++] = (byte) ((n & 0x7F) | 0x80);
+            n >>>= 7;
+        }
+        buffer[position++] = (byte) n;
+    }
+
+    void writeInt(int value) {
+        writeLong(value);
+    }
+
+    void writeIndex(int unionIndex) {
+        writeLong(unionIndex);
+    }
+
+    void writeBoolean(boolean value) {
+        ensureCapacity(1);
+        buffer[position++] = (byte) (value ? 1 : 0);
+    }
+
+    void writeString(ByteString utf8) {
+        int length = utf8.size();
+        writeLong(length);
+        ensureCapacity(length);
+        utf8.copyTo(buffer, position);
+        position += length;
+    }
+
+    byte[] toByteArray() {
+        return Arrays.copyOf(buffer, position);
+    }
+
+    private void ensureCapacity(int bytes) {
+        if (position + bytes > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + bytes));
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package ru.yandex.practicum.telemetry.collector.service.transcoder;
+
+import org.apache.avro.Schema;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.grpc.telemetry.event.ClimateSensorProto;
+import ru.yandex.practicum.grpc.telemetry.event.LightSensorProto;
+import ru.yandex.practicum.grpc.telemetry.event.MotionSensorProto;
+import ru.yandex.practicum.grpc.telemetry.event.SensorEventProto;
+import ru.yandex.practicum.grpc.telemetry.event.TemperatureSensorProto;
+import ru.yandex.practicum.kafka.telemetry.event.ClimateSensorAvro;
+import ru.yandex.practicum.kafka.telemetry.event.LightSensorAvro;
+import ru.yandex.practicum.kafka.telemetry.event.MotionSensorAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SensorEventAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SwitchSensorAvro;
+import ru.yandex.practicum.kafka.telemetry.event.TemperatureSensorAvro;
+
+/**
+ * Кодирует {@link SensorEventProto} сразу в бинарный формат {@link SensorEventAvro},
+ * минуя построение SpecificRecord и его обход сериализатором.
+ * Порядок полей повторяет SensorEvent.avdl, индексы ветвей union берутся из схемы.
+ */
+@Component
+public class SensorEventAvroTranscoder {
+    private static final Schema PAYLOAD_SCHEMA = SensorEventAvro.getClassSchema().getField("payload").schema();
+    private static final int CLIMATE_INDEX = unionIndex(ClimateSensorAvro.getClassSchema());
+    private static final int LIGHT_INDEX = unionIndex(LightSensorAvro.getClassSchema());
+    private static final int MOTION_INDEX = unionIndex(MotionSensorAvro.getClassSchema());
+    private static final int SWITCH_INDEX = unionIndex(SwitchSensorAvro.getClassSchema());
+    private static final int TEMPERATURE_INDEX = unionIndex(TemperatureSensorAvro.getClassSchema());
+
+    private final ThreadLocal<AvroBinaryWriter> writers = ThreadLocal.withInitial(AvroBinaryWriter::new);
+
+    public byte[] encode(SensorEventProto event, long timestamp) {
+        AvroBinaryWriter out = writers.get();
+        out.reset();
+        out.writeString(event.getIdBytes());
+        out.writeString(event.getHubIdBytes());
+        out.writeLong(timestamp);
+        switch (event.getPayloadCase()) {
+            case CLIMATE_SENSOR -> {
+                ClimateSensorProto climate = event.getClimateSensor();
+                out.writeIndex(CLIMATE_INDEX);
+                out.writeInt(climate.getTemperatureC());
+                out.writeInt(climate.getHumidity());
+                out.writeInt(climate.getCo2Level());
+            }
+            case LIGHT_SENSOR -> {
+                LightSensorProto light = event.getLightSensor();
+                out.writeIndex(LIGHT_INDEX);
+                out.writeInt(light.getLinkQuality());
+                out.writeInt(light.getLuminosity());
+            }
+            case MOTION_SENSOR -> {
+                MotionSensorProto motion = event.getMotionSensor();
+                out.writeIndex(MOTION_INDEX);
+                out.writeInt(motion.getLinkQuality());
+                out.writeBoolean(motion.getMotion());
+                out.writeInt(motion.getVoltage());
+            }
+            case SWITCH_SENSOR -> {
+                out.writeIndex(SWITCH_INDEX);
+                out.writeBoolean(event.getSwitchSensor().getState());
+            }
+            case TEMPERATURE_SENSOR -> {
+                TemperatureSensorProto temperature = event.getTemperatureSensor();
+                out.writeIndex(TEMPERATURE_INDEX);
+                out.writeInt(temperature.getTemperatureC());
+                out.writeInt(temperature.getTemperatureF());
+            }
+            case PAYLOAD_NOT_SET -> throw new IllegalArgumentException("Событие датчика " + event.getId() + " без показаний");
+        }
+        return out.toByteArray();
+    }
+
+    private static int unionIndex(Schema branch) {
+        return PAYLOAD_SCHEMA.getIndexNamed(branch.getFullName());
+    }
+}
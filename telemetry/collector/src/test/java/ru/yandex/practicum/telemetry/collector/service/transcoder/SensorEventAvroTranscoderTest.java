@@ -0,0 +1,96 @@
+package ru.yandex.practicum.telemetry.collector.service.transcoder;
+
+import kafka.serializer.GeneralAvroSerializer;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import ru.yandex.practicum.grpc.telemetry.event.ClimateSensorProto;
+import ru.yandex.practicum.grpc.telemetry.event.LightSensorProto;
+import ru.yandex.practicum.grpc.telemetry.event.MotionSensorProto;
+import ru.yandex.practicum.grpc.telemetry.event.SensorEventProto;
+import ru.yandex.practicum.grpc.telemetry.event.SwitchSensorProto;
+import ru.yandex.practicum.grpc.telemetry.event.TemperatureSensorProto;
+import ru.yandex.practicum.kafka.telemetry.event.ClimateSensorAvro;
+import ru.yandex.practicum.kafka.telemetry.event.LightSensorAvro;
+import ru.yandex.practicum.kafka.telemetry.event.MotionSensorAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SensorEventAvro;
+import ru.yandex.practicum.kafka.telemetry.event.SwitchSensorAvro;
+import ru.yandex.practicum.kafka.telemetry.event.TemperatureSensorAvro;
+
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.params.provider.Arguments.arguments;
+
+/**
+ * Прямое кодирование {@link SensorEventAvroTranscoder} должно давать те же байты, что и
+ * {@link GeneralAvroSerializer} для эквивалентной записи {@link SensorEventAvro}.
+ */
+class SensorEventAvroTranscoderTest {
+    private static final long TIMESTAMP = 1_700_000_000_123L;
+
+    private final SensorEventAvroTranscoder transcoder = new SensorEventAvroTranscoder();
+    private final GeneralAvroSerializer serializer = new GeneralAvroSerializer();
+
+    @ParameterizedTest
+    @MethodSource("events")
+    void encodesSameBytesAsAvroSerializer(SensorEventProto event, SensorEventAvro expected) {
+        assertThat(transcoder.encode(event, TIMESTAMP))
+                .isEqualTo(serializer.serialize("telemetry.sensors.v1", expected));
+    }
+
+    static Stream<Arguments> events() {
+        return Stream.of(
+                arguments(
+                        proto("climate-1", "hub-1").setClimateSensor(ClimateSensorProto.newBuilder()
+                                .setTemperatureC(-15).setHumidity(45).setCo2Level(Integer.MAX_VALUE)).build(),
+                        avro("climate-1", "hub-1", new ClimateSensorAvro(-15, 45, Integer.MAX_VALUE))),
+                arguments(
+                        proto("climate-2", "hub-1").setClimateSensor(ClimateSensorProto.newBuilder()
+                                .setTemperatureC(Integer.MIN_VALUE)).build(),
+                        avro("climate-2", "hub-1", new ClimateSensorAvro(Integer.MIN_VALUE, 0, 0))),
+                arguments(
+                        proto("light-1", "хаб-кухня").setLightSensor(LightSensorProto.newBuilder()
+                                .setLinkQuality(97).setLuminosity(-1)).build(),
+                        avro("light-1", "хаб-кухня", new LightSensorAvro(97, -1))),
+                arguments(
+                        proto("motion-1", "hub-1").setMotionSensor(MotionSensorProto.newBuilder()
+                                .setLinkQuality(64).setMotion(true).setVoltage(-220)).build(),
+                        avro("motion-1", "hub-1", new MotionSensorAvro(64, true, -220))),
+                arguments(
+                        proto("motion-2", "hub-1").setMotionSensor(MotionSensorProto.newBuilder()
+                                .setMotion(false)).build(),
+                        avro("motion-2", "hub-1", new MotionSensorAvro(0, false, 0))),
+                arguments(
+                        proto("switch-1", "hub-1").setSwitchSensor(SwitchSensorProto.newBuilder()
+                                .setState(true)).build(),
+                        avro("switch-1", "hub-1", new SwitchSensorAvro(true))),
+                arguments(
+                        proto("", "").setSwitchSensor(SwitchSensorProto.newBuilder()
+                                .setState(false)).build(),
+                        avro("", "", new SwitchSensorAvro(false))),
+                arguments(
+                        proto("temperature-1", "hub-1").setTemperatureSensor(TemperatureSensorProto.newBuilder()
+                                .setTemperatureC(-40).setTemperatureF(-40)).build(),
+                        avro("temperature-1", "hub-1", new TemperatureSensorAvro(-40, -40))),
+                arguments(
+                        proto("temperature-2", "").setTemperatureSensor(TemperatureSensorProto.newBuilder()
+                                .setTemperatureC(300_000).setTemperatureF(Integer.MIN_VALUE + 1)).build(),
+                        avro("temperature-2", "", new TemperatureSensorAvro(300_000, Integer.MIN_VALUE + 1))));
+    }
+
+    private static SensorEventProto.Builder proto(String id, String hubId) {
+        return SensorEventProto.newBuilder()
+                .setId(id)
+                .setHubId(hubId);
+    }
+
+    private static SensorEventAvro avro(String id, String hubId, Object payload) {
+        return SensorEventAvro.newBuilder()
+                .setId(id)
+                .setHubId(hubId)
+                .setTimestamp(TIMESTAMP)
+                .setPayload(payload)
+                .build();
+    }
+}
@@ -6,6 +6,7 @@ import io.grpc.StatusRuntimeException;
 import io.grpc.stub.StreamObserver;
 import lombok.extern.slf4j.Slf4j;
 import net.devh.boot.grpc.server.service.GrpcService;
+import ru.yandex.practicum.grpc.telemetry.event.DeviceActionBatchRequest;
 import ru.yandex.practicum.grpc.telemetry.event.DeviceActionRequest;
 import ru.yandex.practicum.grpc.telemetry.hubrouter.HubRouterControllerGrpc;
 
@@ -24,4 +25,31 @@ public class HubRouterController extends HubRouterControllerGrpc.HubRouterContro
             responseObserver.onError(new StatusRuntimeException(Status.fromThrowable(e)));
         }
     }
+
+    @Override
+    public StreamObserver<DeviceActionBatchRequest> handleDeviceActionStream(StreamObserver<Empty> responseObserver) {
+        return new StreamObserver<>() {
+            private int received;
+
+            @Override
+            public void onNext(DeviceActionBatchRequest batch) {
+                received += batch.getActionsCount();
+                for (DeviceActionRequest request : batch.getActionsList()) {
+                    log.info("Получили DeviceAction {}", request);
+                }
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                log.warn("Поток действий прерван после {} действий", received, t);
+            }
+
+            @Override
+            public void onCompleted() {
+                log.debug("Поток действий завершён, получено {} действий", received);
+                responseObserver.onNext(Empty.getDefaultInstance());
+                responseObserver.onCompleted();
+            }
+        };
+    }
 }
@@ -8,26 +8,43 @@ import org.apache.avro.specific.SpecificDatumReader;
 import org.apache.avro.specific.SpecificRecordBase;
 import org.apache.kafka.common.serialization.Deserializer;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 public class BaseAvroDeserializer<T extends SpecificRecordBase> implements Deserializer<T> {
+    private static final Map<Schema, DatumReader<?>> READERS = new ConcurrentHashMap<>();
+
     private final DecoderFactory decoderFactory;
     private final DatumReader<T> reader;
+    private final ThreadLocal<BinaryDecoder> decoders = new ThreadLocal<>();
 
     public BaseAvroDeserializer(Schema schema) {
-        this.decoderFactory = DecoderFactory.get();
-        this.reader = new SpecificDatumReader<>(schema);
+        this(DecoderFactory.get(), schema);
     }
 
+    @SuppressWarnings("unchecked")
     public BaseAvroDeserializer(DecoderFactory decoderFactory, Schema schema) {
         this.decoderFactory = decoderFactory;
-        this.reader = new SpecificDatumReader<>(schema);
+        this.reader = (DatumReader<T>) READERS.computeIfAbsent(schema, SpecificDatumReader::new);
     }
 
     @Override
     public T deserialize(String topic, byte[] data) {
+        return deserialize(topic, data, null);
+    }
+
+    /**
+     * Декодирует запись в переданный экземпляр {@code reuse}, если он не {@code null}.
+     * Kafka возвращает из {@code poll} сразу пачку записей, поэтому через обычный
+     * {@link #deserialize(String, byte[])} переиспользование не включается: этим методом
+     * пользуется потребитель, читающий сырые байты и обрабатывающий записи по одной.
+     */
+    public T deserialize(String topic, byte[] data, T reuse) {
         try {
             if (data != null) {
-                BinaryDecoder decoder = decoderFactory.binaryDecoder(data, null);
-                return this.reader.read(null, decoder);
+                BinaryDecoder decoder = decoderFactory.binaryDecoder(data, decoders.get());
+                decoders.set(decoder);
+                return this.reader.read(reuse, decoder);
             }
             return null;
         } catch (Exception e) {
@@ -0,0 +1,9 @@
+package kafka.deserializer;
+
+import ru.yandex.practicum.kafka.telemetry.event.SensorEventBatchAvro;
+
+public class SensorEventBatchDeserializer extends BaseAvroDeserializer<SensorEventBatchAvro> {
+    public SensorEventBatchDeserializer() {
+        super(SensorEventBatchAvro.getClassSchema());
+    }
+}
@@ -0,0 +1,59 @@
+package kafka.deserializer;
+
+import ru.yandex.practicum.kafka.telemetry.event.SensorEventAvro;
+
+import java.util.Arrays;
+
+/**
+ * Событие датчика, у которого разобраны только заголовочные поля. Показания остаются
+ * в исходном буфере записи в двоичном виде Avro: индекс ветви объединения и тело записи,
+ * то есть ровно так, как они кодируются в поле {@code data} состояния датчика в снапшоте.
+ */
+public final class SensorEventHeader {
+    private static final SensorEventDeserializer FULL = new SensorEventDeserializer();
+
+    private final String id;
+    private final String hubId;
+    private final long timestamp;
+    private final byte[] data;
+    private final int payloadOffset;
+
+    SensorEventHeader(String id, String hubId, long timestamp, byte[] data, int payloadOffset) {
+        this.id = id;
+        this.hubId = hubId;
+        this.timestamp = timestamp;
+        this.data = data;
+        this.payloadOffset = payloadOffset;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getHubId() {
+        return hubId;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public int payloadLength() {
+        return data.length - payloadOffset;
+    }
+
+    public boolean payloadEquals(byte[] payload) {
+        return Arrays.equals(data, payloadOffset, data.length, payload, 0, payload.length);
+    }
+
+    public void copyPayload(byte[] target) {
+        System.arraycopy(data, payloadOffset, target, 0, payloadLength());
+    }
+
+    /**
+     * Полностью декодирует событие, для редких путей, которым нужны сами показания.
+     */
+    public SensorEventAvro decode() {
+        return FULL.deserialize(null, data);
+    }
+}
@@ -0,0 +1,64 @@
+package kafka.deserializer;
+
+import org.apache.kafka.common.serialization.Deserializer;
+import ru.yandex.practicum.kafka.telemetry.event.SensorEventAvro;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Ленивый десериализатор событий датчиков: читает {@code id}, {@code hub_id} и
+ * {@code timestamp}, а показания, последнее поле записи, оставляет байтами.
+ */
+public class SensorEventHeaderDeserializer implements Deserializer<SensorEventHeader> {
+    private static final int PAYLOAD_BRANCHES =
+            SensorEventAvro.getClassSchema().getField("payload").schema().getTypes().size();
+
+    @Override
+    public SensorEventHeader deserialize(String topic, byte[] data) {
+        if (data == null) {
+            return null;
+        }
+        try {
+            Cursor cursor = new Cursor(data);
+            String id = cursor.readString();
+            String hubId = cursor.readString();
+            long timestamp = cursor.readLong();
+            int payloadOffset = cursor.position;
+            long branch = cursor.readLong();
+            if (branch < 0 || branch >= PAYLOAD_BRANCHES || cursor.position >= data.length) {
+                throw new IllegalArgumentException("Неизвестный тип показаний: " + branch);
+            }
+            return new SensorEventHeader(id, hubId, timestamp, data, payloadOffset);
+        } catch (Exception e) {
+            throw new RuntimeException("Ошибка десериализации данных из топика [" + topic + "]", e);
+        }
+    }
+
+    private static final class Cursor {
+        private final byte[] data;
+        private int position;
+
+        private Cursor(byte[] data) {
+            this.data = data;
+        }
+
+        private long readLong() {
+            long value = 0;
+            int shift = 0;
+            int b;
+            do {
+                b = data[position++] & 0xff;
+                value |= (long) (b & 0x7f) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        private String readString() {
+            int length = (int) readLong();
+            String value = new String(data, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package kafka.partitioner;
+
+import org.apache.kafka.clients.producer.Partitioner;
+import org.apache.kafka.common.Cluster;
+import org.apache.kafka.common.utils.Utils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * Распределяет записи телеметрии по партициям по ключу hub_id. Все события
+ * одного хаба попадают в одну партицию каждого топика, поэтому порядок внутри хаба
+ * сохраняется, а обработку можно масштабировать по партициям. Хэш совпадает с
+ * хэшем ключа в Kafka по умолчанию, но не зависит от его будущих изменений и
+ * доступен потребителям через {@link #partitionFor(String, int)}.
+ */
+public class HubIdPartitioner implements Partitioner {
+
+    public static int partitionFor(String hubId, int numPartitions) {
+        return partitionFor(hubId.getBytes(StandardCharsets.UTF_8), numPartitions);
+    }
+
+    private static int partitionFor(byte[] hubIdBytes, int numPartitions) {
+        return Utils.toPositive(Utils.murmur2(hubIdBytes)) % numPartitions;
+    }
+
+    @Override
+    public int partition(String topic, Object key, byte[] keyBytes, Object value, byte[] valueBytes, Cluster cluster) {
+        if (keyBytes == null) {
+            throw new IllegalArgumentException("Запись в топик " + topic + " должна иметь ключ hub_id");
+        }
+        return partitionFor(keyBytes, cluster.partitionsForTopic(topic).size());
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public void configure(Map<String, ?> configs) {
+    }
+}
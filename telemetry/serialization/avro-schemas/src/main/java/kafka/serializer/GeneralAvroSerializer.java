@@ -1,7 +1,8 @@
 package kafka.serializer;
 
+import org.apache.avro.Schema;
+import org.apache.avro.io.BinaryEncoder;
 import org.apache.avro.io.DatumWriter;
-import org.apache.avro.io.Encoder;
 import org.apache.avro.io.EncoderFactory;
 import org.apache.avro.specific.SpecificDatumWriter;
 import org.apache.avro.specific.SpecificRecordBase;
@@ -10,26 +11,39 @@ import org.apache.kafka.common.serialization.Serializer;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
-
+/**
+ * Сериализатор Avro-записей. Писатель создаётся один раз на схему, а буфер и кодировщик
+ * переиспользуются в пределах потока, поэтому один экземпляр можно безопасно делить
+ * между потоками.
+ */
 public class GeneralAvroSerializer implements Serializer<SpecificRecordBase> {
-    Encoder encoder;
+    private static final int INITIAL_BUFFER_SIZE = 256;
+
+    private final Map<Schema, DatumWriter<SpecificRecordBase>> writers = new ConcurrentHashMap<>();
+    private final ThreadLocal<EncoderState> encoders = ThreadLocal.withInitial(EncoderState::new);
 
     @Override
     public byte[] serialize(String topic, SpecificRecordBase data) {
-        try(ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
-            byte[] result = null;
-            encoder = EncoderFactory.get().binaryEncoder(baos, null);
-            if (data != null) {
-                DatumWriter<SpecificRecordBase> writer = new SpecificDatumWriter<>(data.getSchema());
-                writer.write(data, encoder);
-                encoder.flush();
-                result = baos.toByteArray();
-            }
-            return result;
-
+        if (data == null) {
+            return null;
+        }
+        try {
+            EncoderState state = encoders.get();
+            state.out.reset();
+            state.encoder = EncoderFactory.get().binaryEncoder(state.out, state.encoder);
+            writers.computeIfAbsent(data.getSchema(), SpecificDatumWriter::new).write(data, state.encoder);
+            state.encoder.flush();
+            return state.out.toByteArray();
         } catch (IOException e) {
             throw new SerializationException("Serialization error", e);
         }
     }
-}
\ No newline at end of file
+
+    private static final class EncoderState {
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream(INITIAL_BUFFER_SIZE);
+        private BinaryEncoder encoder;
+    }
+}
@@ -0,0 +1,25 @@
+package kafka.serializer;
+
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Заголовки записей телеметрии. Запись топика событий датчиков без заголовка
+ * {@link #FORMAT} содержит один {@code SensorEventAvro}, с форматом {@link #SENSOR_EVENT_BATCH} —
+ * {@code SensorEventBatchAvro}.
+ */
+public final class TelemetryHeaders {
+    public static final String FORMAT = "telemetry.format";
+    public static final byte[] SENSOR_EVENT_BATCH = "sensor-event-batch".getBytes(StandardCharsets.UTF_8);
+
+    private TelemetryHeaders() {
+    }
+
+    public static boolean isSensorEventBatch(Headers headers) {
+        Header format = headers != null ? headers.lastHeader(FORMAT) : null;
+        return format != null && Arrays.equals(format.value(), SENSOR_EVENT_BATCH);
+    }
+}